@@ -0,0 +1,217 @@
+package nz.ac.auckland.se206.ml;
+
+import ai.djl.ModelException;
+import ai.djl.modality.Classifications.Classification;
+import ai.djl.modality.cv.Image;
+import ai.djl.modality.cv.ImageFactory;
+import ai.djl.translate.TranslateException;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import nz.ac.auckland.se206.util.AreaDownsampler;
+import org.imgscalr.Scalr;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Times each stage of a prediction tick on its own, from the snapshot of the canvas to the strings
+ * shown to the player, plus the whole tick end to end. The stages of the original pipeline (Scalr
+ * resize and DJL image) are kept next to the ones that replaced them for comparison. The stages
+ * using the model need the model archive on the classpath, the others run without it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DoodlePipelineBenchmark {
+
+  // size of the drawable canvas of the game
+  private static final int CANVAS_WIDTH = 937;
+  private static final int CANVAS_HEIGHT = 688;
+  private static final int CATEGORIES = 345;
+
+  /** The drawings and results every stage starts from, built without the model. */
+  @State(Scope.Thread)
+  public static class Pipeline {
+    private BufferedImage canvas;
+    private BufferedImage resized;
+    private AreaDownsampler downsampler;
+    private StrokeRasterizer rasterizer;
+    private PredictionFrame frame;
+    private List<Classification> top10;
+    private String word;
+
+    /** Draws a random doodle and builds a frame with random probabilities. */
+    @Setup(Level.Trial)
+    public void setUp() {
+      final Random random = new Random(206);
+      canvas = drawDoodle(random);
+      resized =
+          Scalr.resize(
+              canvas, Scalr.Method.SPEED, Scalr.Mode.FIT_TO_WIDTH, 65, 65, Scalr.OP_ANTIALIAS);
+      downsampler = new AreaDownsampler(DoodlePrediction.INPUT_WIDTH);
+      rasterizer = new StrokeRasterizer(CANVAS_WIDTH, CANVAS_HEIGHT);
+
+      final List<String> names = new ArrayList<>(CATEGORIES);
+      final float[] probabilities = new float[CATEGORIES];
+      for (int i = 0; i < CATEGORIES; i++) {
+        names.add("category_" + i);
+        probabilities[i] = random.nextFloat();
+      }
+      frame = new PredictionFrame(new ClassTable(names), probabilities);
+      top10 = frame.getTopK(10);
+      word = "category " + (CATEGORIES / 2);
+    }
+  }
+
+  /** The loaded and warmed up model, only created by the stages that need it. */
+  @State(Scope.Thread)
+  public static class Model {
+    private DoodlePrediction model;
+    private DoodleInput input;
+
+    /**
+     * Loads the model on the configured backend.
+     *
+     * @param pipeline The drawings of the benchmark
+     * @throws ModelException If the model cannot be loaded
+     * @throws IOException If the model is not on the classpath
+     */
+    @Setup(Level.Trial)
+    public void setUp(final Pipeline pipeline) throws ModelException, IOException {
+      model = new DoodlePrediction(InferenceBackend.getConfigured(), 1);
+      input = DoodleInput.fromImage(pipeline.resized);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+      model.closeManager();
+    }
+  }
+
+  /**
+   * Draws random strokes in the brush colours of the game on a black canvas.
+   *
+   * @param random The random generator of the doodle
+   * @return the canvas
+   */
+  private static BufferedImage drawDoodle(final Random random) {
+    final BufferedImage canvas =
+        new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D g = canvas.createGraphics();
+    final Color[] colours = {Color.CYAN, new Color(30, 144, 255), new Color(255, 20, 147)};
+
+    g.setStroke(new BasicStroke(12, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+    for (int i = 0; i < 40; i++) {
+      g.setColor(colours[i % colours.length]);
+      g.drawLine(
+          random.nextInt(CANVAS_WIDTH),
+          random.nextInt(CANVAS_HEIGHT),
+          random.nextInt(CANVAS_WIDTH),
+          random.nextInt(CANVAS_HEIGHT));
+    }
+    g.dispose();
+
+    return canvas;
+  }
+
+  /** Original resize stage: nearest neighbour shrink followed by an antialias blur. */
+  @Benchmark
+  public BufferedImage scalrResize(final Pipeline pipeline) {
+    return Scalr.resize(
+        pipeline.canvas,
+        Scalr.Method.SPEED,
+        Scalr.Mode.FIT_TO_WIDTH,
+        65,
+        65,
+        Scalr.OP_ANTIALIAS);
+  }
+
+  /** Current resize stage: area average and grayscale conversion in one pass. */
+  @Benchmark
+  public float[] areaDownsample(final Pipeline pipeline) {
+    return pipeline.downsampler.downsample(pipeline.canvas);
+  }
+
+  /** Current capture stage: the lines of one tick of dragging, drawn from the stroke queue. */
+  @Benchmark
+  public DoodleInput rasterizeStrokes(final Pipeline pipeline) {
+    final StrokeRasterizer rasterizer = pipeline.rasterizer;
+    for (int i = 0; i < 10; i++) {
+      rasterizer.addLine(400 + i * 4, 300, 404 + i * 4, 303, 12, 0xff00ffff);
+    }
+
+    return rasterizer.rasterize();
+  }
+
+  /** Original conversion stage: resized image to DJL image. */
+  @Benchmark
+  public Image toDjlImage(final Pipeline pipeline) {
+    return ImageFactory.getInstance().fromImage(pipeline.resized);
+  }
+
+  /** Conversion of a resized image to the model input, when it does not come from the canvas. */
+  @Benchmark
+  public DoodleInput toDoodleInput(final Pipeline pipeline) {
+    return DoodleInput.fromImage(pipeline.resized);
+  }
+
+  /** Model stage: input tensor, forward pass and softmax, on a pooled predictor. */
+  @Benchmark
+  public PredictionFrame predict(final Model model) throws TranslateException {
+    return model.model.getPredictionFrame(model.input);
+  }
+
+  /** Original result stage: the boxed top 10 classifications. */
+  @Benchmark
+  public List<Classification> topK(final Pipeline pipeline) {
+    return pipeline.frame.getTopK(10);
+  }
+
+  /** Current result stage: the rank of the word to draw. */
+  @Benchmark
+  public int rank(final Pipeline pipeline) {
+    return pipeline.frame.getRank(pipeline.word);
+  }
+
+  /** Display stage, as originally built from the top 10 classifications. */
+  @Benchmark
+  public List<String> predictionString(final Pipeline pipeline) {
+    return DoodlePrediction.getPredictionString(pipeline.top10, 3);
+  }
+
+  /** Display stage, as currently built from the frame. */
+  @Benchmark
+  public List<String> framePredictionString(final Pipeline pipeline) {
+    return pipeline.frame.getPredictionString(10, 3);
+  }
+
+  /** The whole tick: canvas to model to ranking label and top 10 strings. */
+  @Benchmark
+  public void endToEnd(final Pipeline pipeline, final Model model, final Blackhole blackhole)
+      throws TranslateException {
+    final PredictionFrame frame = model.model.getPredictionFrame(pipeline.canvas);
+
+    blackhole.consume(frame.isWin(pipeline.word, 3, 10));
+    blackhole.consume(frame.getRank(pipeline.word));
+    blackhole.consume(frame.getPredictionString(10, 3));
+  }
+}
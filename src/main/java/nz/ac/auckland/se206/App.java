@@ -1,6 +1,8 @@
 package nz.ac.auckland.se206;
 
+import com.opencsv.exceptions.CsvException;
 import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.event.EventHandler;
@@ -9,6 +11,9 @@ import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
+import nz.ac.auckland.se206.ml.ModelManager;
+import nz.ac.auckland.se206.util.AppExecutors;
+import nz.ac.auckland.se206.words.CategoryIndex;
 
 /**
  * This is the entry point of the JavaFX application, while you can change this class, it should
@@ -39,6 +44,23 @@ public class App extends Application {
    */
   @Override
   public void start(final Stage stage) throws IOException {
+    // load the DL model in the background while the user chooses a player
+    ModelManager.preload();
+    // and the categories, so that the first game does not read them on the JavaFX thread
+    try {
+      AppExecutors.io()
+          .execute(
+              () -> {
+                try {
+                  CategoryIndex.getInstance();
+                } catch (IOException | CsvException e) {
+                  e.printStackTrace();
+                }
+              });
+    } catch (RejectedExecutionException e) {
+      // the io pool is full, the first game reads the categories instead
+    }
+
     // we'll always have only one chooseplayer and menu instances
     SceneManager.storeUi(SceneManager.AppUi.CHOOSEPLAYER, loadFxml("chooseplayer"));
 
@@ -54,6 +76,8 @@ public class App extends Application {
         new EventHandler<WindowEvent>() {
           @Override
           public void handle(WindowEvent event) {
+            // give the speech and the other background work a moment to finish
+            AppExecutors.shutdown(500);
             // calls the application stop method
             Platform.exit();
             // terminates any running programs aka threads
@@ -1,50 +1,63 @@
 package nz.ac.auckland.se206;
 
 import ai.djl.ModelException;
-import ai.djl.modality.Classifications.Classification;
 import ai.djl.translate.TranslateException;
 import com.opencsv.exceptions.CsvException;
-import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.io.File;
 import java.io.IOException;
-import java.net.URISyntaxException;
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
-import javafx.animation.Animation.Status;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
-import javafx.animation.KeyValue;
 import javafx.animation.Timeline;
 import javafx.application.Platform;
-import javafx.beans.property.IntegerProperty;
-import javafx.beans.property.SimpleIntegerProperty;
 import javafx.concurrent.Task;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
-import javafx.scene.SnapshotParameters;
 import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.media.AudioClip;
 import javafx.scene.paint.Color;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
 import javafx.stage.Stage;
 import javafx.util.Duration;
+import nz.ac.auckland.se206.ml.DoodleInput;
 import nz.ac.auckland.se206.ml.DoodlePrediction;
+import nz.ac.auckland.se206.ml.InferenceScheduler;
+import nz.ac.auckland.se206.ml.ModelManager;
+import nz.ac.auckland.se206.ml.PredictionFrame;
+import nz.ac.auckland.se206.ml.PredictionService;
+import nz.ac.auckland.se206.ml.PredictionService.Round;
+import nz.ac.auckland.se206.ml.StrokeRasterizer;
+import nz.ac.auckland.se206.replay.SessionRecorder;
+import nz.ac.auckland.se206.replay.SessionRecording.Outcome;
 import nz.ac.auckland.se206.speech.TextToSpeech;
-import nz.ac.auckland.se206.words.CategorySelector;
+import nz.ac.auckland.se206.util.AppExecutors;
+import nz.ac.auckland.se206.util.AreaDownsampler;
+import nz.ac.auckland.se206.util.CanvasCapture;
+import nz.ac.auckland.se206.util.GameClock;
+import nz.ac.auckland.se206.util.PerformanceMonitor;
+import nz.ac.auckland.se206.util.PerformanceMonitor.Metric;
 import nz.ac.auckland.se206.words.DefinitionFetcher;
 import nz.ac.auckland.se206.words.WordNotFoundException;
+import nz.ac.auckland.se206.words.WordScheduler;
 import org.apache.commons.lang3.StringUtils;
 
 /**
@@ -73,19 +86,26 @@ public class CanvasController {
   @FXML private Label lblReward;
   @FXML private ImageView imgBadge;
   @FXML private Button btnHint;
+  @FXML private Label lblPerformance;
 
   private GraphicsContext graphic;
   private DoodlePrediction model;
   private String currentWord;
   private TextToSpeech speech;
 
-  private Timeline timeline = new Timeline();
+  // the countdown of a normal game, ticked by the clock timeline to update the time label
+  private GameClock clock;
+  private Timeline clockTimeline = new Timeline();
+  // refreshes the performance HUD while it is shown
+  private Timeline hudTimeline = new Timeline();
   private UserProfile currentUser = SceneManager.getProfile(SceneManager.getMainUser());
   private int timeSettings = currentUser.getTimeSettings();
-  private volatile IntegerProperty seconds = new SimpleIntegerProperty(timeSettings);
 
   private int timePlayed;
   private boolean isPredictionStarted = false;
+  private Round<Boolean> predictionRound;
+  // the results of the last prediction that the JavaFX thread has not shown yet
+  private final AtomicReference<Runnable> pendingUpdate = new AtomicReference<>();
   private boolean isZen = currentUser.isZenMode();
   private boolean isHidden = currentUser.isHiddenMode();
   private String labelText;
@@ -96,25 +116,78 @@ public class CanvasController {
   // mouse coordinates
   private double currentX;
   private double currentY;
+  // colour of the brush, as drawn on the copy of the canvas kept for the DL model
+  private int brushArgb;
+
+  // bumped on the JavaFX thread whenever the pixels of the canvas change, so that the prediction
+  // loop only runs the model on drawings it has not seen yet
+  private volatile long canvasVersion = 0;
+  // every line drawn on the canvas is also queued here, so the prediction thread can build the
+  // model input without a snapshot of the canvas on the JavaFX thread
+  private StrokeRasterizer rasterizer;
+  // with -Dquickdraw.capture=snapshot, the model input is shrunk from scaled snapshots instead
+  private CanvasCapture modelCapture;
+  private AreaDownsampler downsampler;
+  private DoodleInput snapshotInput;
+  private CanvasCapture saveCapture;
+  private volatile long predictedVersion = -1;
+  // decides when the changed drawing is classified, from the strokes of the player
+  private final InferenceScheduler scheduler = new InferenceScheduler(System.nanoTime());
+  // records the game for the SessionReplayer when -Dquickdraw.record.dir is set
+  private SessionRecorder recorder;
+
+  // how long the prediction service waits between two checks of the scheduler
+  private static final long PREDICTION_POLL_MILLIS = 20;
+  // rasterization and inference run on the inference thread of the application, shared by every
+  // game, and never on the JavaFX thread
+  private static final PredictionService predictionService =
+      new PredictionService(AppExecutors.inference());
+  private static final Duration HUD_REFRESH = Duration.millis(500);
+  private static final Duration CLOCK_TICK = Duration.millis(100);
 
   /**
    * JavaFX calls this method once the GUI elements are loaded. In our case we create a listener for
-   * the drawing, and we load the ML model.
+   * the drawing, and we start loading the ML model if it is not loaded yet.
    *
-   * @throws ModelException If there is an error in reading the input/output of the DL model.
-   * @throws IOException If the model cannot be found on the file system.
+   * @throws IOException If the word list cannot be read.
    * @throws CsvException If there is an issue with the opencsv loading
-   * @throws URISyntaxException If string cannot be parsed as URI reference
    */
-  public void initialize() throws ModelException, IOException, URISyntaxException, CsvException {
+  public void initialize() throws IOException, CsvException {
     graphic = canvas.getGraphicsContext2D();
+    rasterizer = new StrokeRasterizer((int) canvas.getWidth(), (int) canvas.getHeight());
+    if (CanvasCapture.isSnapshotConfigured()) {
+      // snapshot at 4 times the input size, which the area average shrinks as precisely as a full
+      // size snapshot
+      final int width = DoodlePrediction.INPUT_WIDTH;
+      final int height =
+          AreaDownsampler.getTargetHeight(width, (int) canvas.getWidth(), (int) canvas.getHeight());
+      modelCapture = new CanvasCapture(canvas, width * 4, height * 4);
+      downsampler = new AreaDownsampler(width);
+      snapshotInput = new DoodleInput(width, height);
+    }
     chooseWord();
+    recorder =
+        new SessionRecorder(
+            currentWord,
+            currentUser.getAccuracy(),
+            currentUser.getConfidence(),
+            timeSettings,
+            isZen,
+            (int) canvas.getWidth(),
+            (int) canvas.getHeight());
 
     // save coordinates when mouse is pressed on the canvas
     canvas.setOnMousePressed(
         e -> {
           currentX = e.getX();
           currentY = e.getY();
+          recorder.onPress(e.getX(), e.getY());
+        });
+    // predict soon after a stroke ends, the deciding stroke of a game wins right away
+    canvas.setOnMouseReleased(
+        e -> {
+          scheduler.onStrokeEnd(System.nanoTime());
+          recorder.onRelease();
         });
     onDrawBlue();
 
@@ -136,9 +209,16 @@ public class CanvasController {
     // user can't save an empty canvas, drawing can only be saved after game ends
     btnSaveDrawing.setDisable(true);
 
-    model = new DoodlePrediction();
+    // the model is shared by every game, the prediction worker waits for it if it is still loading
+    // so that the JavaFX thread never does
+    ModelManager.preload();
     speech = new TextToSpeech();
 
+    // the performance HUD stays as it was set in the game settings or by the last game
+    hudTimeline = new Timeline(new KeyFrame(HUD_REFRESH, e -> updateHud()));
+    hudTimeline.setCycleCount(Animation.INDEFINITE);
+    showHud(PerformanceMonitor.isHudVisible());
+
     // create a task and bg thread for the text to speech so that loading doesnt lag
     Task<Void> taskWelcomeSpeech =
         new Task<Void>() {
@@ -162,8 +242,7 @@ public class CanvasController {
           }
         };
 
-    Thread bgWelcomeSpeech = new Thread(taskWelcomeSpeech);
-    bgWelcomeSpeech.start();
+    AppExecutors.speech().execute(taskWelcomeSpeech);
   }
 
   /**
@@ -171,26 +250,20 @@ public class CanvasController {
    * settings, if in ZEN mode, the choices is always from ALL categories.
    *
    * @throws CsvException If there is an issue with the opencsv loading
-   * @throws IOException If the model cannot be found on the file system.
-   * @throws URISyntaxException If string cannot be parsed as URI reference
+   * @throws IOException If the category file cannot be read.
    */
-  private void chooseWord() throws URISyntaxException, IOException, CsvException {
-    // implement the category selector and display the category on the lbl
-    CategorySelector categorySelector = new CategorySelector();
+  private void chooseWord() throws IOException, CsvException {
+    // the schedulers keep the words the current user has played, Zen mode has its own
+    WordScheduler scheduler = currentUser.getWordScheduler();
     int wordsSettings = currentUser.getWordsSettings();
 
-    // get words current user has played and all words from words settings
-    ArrayList<String> playedWords = currentUser.getWords();
-    List<String> allWords = categorySelector.getDifficultyList(wordsSettings);
-
     if (isZen) {
-      playedWords = currentUser.getZenWords();
-      wordsSettings = 1;
-      allWords = categorySelector.getDifficultyList(wordsSettings); // ALL words from all categories
+      scheduler = currentUser.getZenWordScheduler();
+      wordsSettings = 1; // ALL words from all categories
     }
 
     // check if the player has played all the words
-    if (playedWords.containsAll(allWords)) {
+    if (scheduler.isAllPlayed(wordsSettings)) {
       if (isZen) {
         currentUser.newZenRound();
       } else {
@@ -198,13 +271,15 @@ public class CanvasController {
       }
     }
 
-    randomWord = getNewWord(allWords, playedWords, categorySelector);
+    randomWord = scheduler.next(wordsSettings);
 
     if (isZen) {
       currentUser.addZenWords(randomWord);
       lblCategory.setText(randomWord);
     } else if (isHidden) {
       btnHint.setDisable(false);
+      // the words without a definition are not drawn again by this game
+      Set<String> rejectedWords = new HashSet<>();
       while (true) {
         try {
           textToSpeechString = DefinitionFetcher.getDefinition(randomWord);
@@ -212,7 +287,16 @@ public class CanvasController {
           break;
         } catch (WordNotFoundException e) {
           // if no definition is found, get a new word
-          randomWord = getNewWord(allWords, playedWords, categorySelector);
+          rejectedWords.add(randomWord);
+          randomWord = scheduler.next(wordsSettings, rejectedWords);
+          if (randomWord == null) {
+            // none of the words left has a definition, they are skipped with a new round
+            currentUser.newRound();
+            randomWord = scheduler.next(wordsSettings, rejectedWords);
+          }
+          if (randomWord == null) {
+            throw new IOException("None of the words of the settings has a definition");
+          }
         }
       }
       lblCategory.setText(StringUtils.repeat("_", randomWord.length()));
@@ -228,26 +312,6 @@ public class CanvasController {
     currentWord = randomWord;
   }
 
-  /**
-   * This method finds a random word from categories depending on the user game settings, that has
-   * not been played by the user before.
-   *
-   * @param allWords The list of words from a set of difficulty categories
-   * @param playedWords The list of words the user has played before
-   * @param categorySelector The instance of the class that fetches the words from the csv
-   * @return a string of the random word that the user has not played before
-   */
-  private String getNewWord(
-      List<String> allWords, List<String> playedWords, CategorySelector categorySelector) {
-    String randomWord = categorySelector.getRandomCategory(currentUser.getWordsSettings());
-    // generate word that user has not played yet in current round
-    while (playedWords.contains(randomWord)) {
-      randomWord = categorySelector.getRandomCategory(currentUser.getWordsSettings());
-    }
-
-    return randomWord;
-  }
-
   /**
    * This method is executed when the cross button is clicked in the Canvas page which switches the
    * root to the menu instance of the user.
@@ -256,6 +320,15 @@ public class CanvasController {
   private void onSwitchToMenu() {
     // play sound
     playOnBack();
+    // the HUD of this game is not refreshed once the game is left
+    hudTimeline.stop();
+    clockTimeline.stop();
+    // a Zen game never ends by itself, its predictions stop when the player leaves it
+    if (predictionRound != null) {
+      predictionRound.cancel();
+    }
+    // and it is saved
+    recorder.save(Outcome.UNFINISHED);
     Scene sceneBtnIsIn = btnToMenu.getScene();
     sceneBtnIsIn.setRoot(SceneManager.getUi(SceneManager.AppUi.MENU));
   }
@@ -276,6 +349,7 @@ public class CanvasController {
     canvas.setDisable(false);
     btnReady.setDisable(true);
     btnReady.setVisible(false);
+    recorder.onStart();
 
     if (isZen) {
       // user should be able to save drawing anytime
@@ -302,6 +376,10 @@ public class CanvasController {
   @FXML
   private void onClear() {
     graphic.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+    rasterizer.clear();
+    canvasVersion++;
+    scheduler.onStrokeEnd(System.nanoTime());
+    recorder.onClear();
     playSound();
   }
 
@@ -373,6 +451,9 @@ public class CanvasController {
    * @param brushSize The size of the brush which depends if user is drawing or erasing
    */
   private void setStrokeProperties(double brushSize) {
+    brushArgb = toArgb((Color) graphic.getStroke());
+    recorder.onBrush(brushArgb, brushSize);
+
     canvas.setOnMouseDragged(
         e -> {
           // Brush size (you can change this, it should not be too small or too large).
@@ -385,6 +466,12 @@ public class CanvasController {
 
           // Create a line that goes from the point (currentX, currentY) and (x,y)
           graphic.strokeLine(currentX, currentY, x, y);
+          // queue the line before the version changes, so that a prediction of the new version
+          // always draws it
+          rasterizer.addLine(currentX, currentY, x, y, size, brushArgb);
+          canvasVersion++;
+          scheduler.onStroke(System.nanoTime());
+          recorder.onDrag(e.getX(), e.getY());
 
           // update the coordinates
           currentX = x;
@@ -392,6 +479,19 @@ public class CanvasController {
         });
   }
 
+  /**
+   * This method converts a brush colour into the ARGB value stored in the game recordings.
+   *
+   * @param color The colour of the brush
+   * @return the ARGB value of the colour
+   */
+  private static int toArgb(Color color) {
+    return (int) Math.round(color.getOpacity() * 255) << 24
+        | (int) Math.round(color.getRed() * 255) << 16
+        | (int) Math.round(color.getGreen() * 255) << 8
+        | (int) Math.round(color.getBlue() * 255);
+  }
+
   /**
    * This method is executed when the save button is clicked. This opens up a secondary stage/pop up
    * which shows the save menu.
@@ -421,73 +521,61 @@ public class CanvasController {
   }
 
   /**
-   * This method checks if the current word is in the top x classifications. Edited: Changes on
-   * param because of the updated winOrLose task.
+   * This method checks if the current word is in the top x classifications of the prediction frame.
+   * Edited: the whole tick now shares a single prediction frame instead of running the model again.
    *
-   * @param classifications The list of the DL predictions
+   * @param frame The DL predictions of the current tick
    * @return if current word is included in the top x classifications
    */
-  private boolean isWin(List<Classification> classifications) {
-    for (int i = 0; i < classifications.size(); i++) {
-      // format the category name from ML the same way as current word
-      if (classifications.get(i).getClassName().replace("_", " ").equals(currentWord)) {
-        // extra condition: user must meet confidence requirements for user to win
-        return model.isAboveProbability(classifications.get(i), currentUser.getConfidence());
-      }
-    }
-
-    return false;
+  private boolean isWin(PredictionFrame frame) {
+    // extra condition: user must meet confidence requirements for user to win
+    return frame.isWin(currentWord, currentUser.getAccuracy(), currentUser.getConfidence());
   }
 
   /**
-   * Get the current snapshot of the canvas. Used in the ML predictions and in the save menu.
-   * Edited: Changes on the BufferedImage settings, instead of Binary, i've made it to RGB so that
-   * it registers the different brush colors.
+   * Get the current snapshot of the canvas. Used in the save menu, the ML predictions are made on
+   * the copy of the drawing kept by the stroke rasterizer. Edited: Changes on the BufferedImage
+   * settings, instead of Binary, i've made it to RGB so that it registers the different brush
+   * colors. The snapshot and its pixel buffer are reused between saves.
    *
    * @return The BufferedImage corresponding to the current canvas content.
    */
   private BufferedImage getCurrentSnapshot() {
-    // this changes the snapshot backgorund to black
-    SnapshotParameters params = new SnapshotParameters();
-    params.setFill(Color.BLACK);
-
-    final Image snapshot = canvas.snapshot(params, null);
-    final BufferedImage image = SwingFXUtils.fromFXImage(snapshot, null);
-
-    // Convert into a binary image.
-    final BufferedImage imageBinary =
-        new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
-
-    final Graphics2D graphics = imageBinary.createGraphics();
-
-    graphics.drawImage(image, 0, 0, null);
+    if (saveCapture == null) {
+      saveCapture = new CanvasCapture(canvas, (int) canvas.getWidth(), (int) canvas.getHeight());
+    }
+    final int[] pixels = saveCapture.capture();
 
-    // To release memory we dispose.
-    graphics.dispose();
+    // copy the pixels straight into the RGB image, the opaque alpha channel is dropped
+    final BufferedImage image =
+        new BufferedImage(
+            saveCapture.getWidth(), saveCapture.getHeight(), BufferedImage.TYPE_INT_RGB);
+    final int[] imagePixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    System.arraycopy(pixels, 0, imagePixels, 0, imagePixels.length);
 
-    return imageBinary;
+    return image;
   }
 
   /**
-   * code adapted from
-   * https://asgteach.com/2011/10/javafx-animation-and-binding-simple-countdown-timer-2/#:~:text=To%20start%20the%20timer%2C%20you,15%20and%20restarts%20the%20countdown.
-   *
-   * <p>Starts the timer time-line for the count-down timer
+   * Starts the count-down timer. Edited: the countdown is a GameClock on the monotonic clock
+   * instead of a property interpolated by a time-line, the label is set once per second.
    */
   private void startTimer() {
+    clock = new GameClock(timeSettings);
+    // the label only changes when the remaining whole seconds do
+    clock.addTickListener(
+        remaining -> {
+          lblTime.setText(String.valueOf(remaining));
+          if (remaining == 0) {
+            clockTimeline.stop();
+          }
+        });
 
-    // creates new timeline for the countdown timer
-    seconds.set(timeSettings);
-    timeline = new Timeline();
-    timeline
-        .getKeyFrames()
-        .add(new KeyFrame(Duration.seconds(timeSettings), new KeyValue(seconds, 0)));
-
-    // binds the timer label to the timeline
-    lblTime.textProperty().bind(seconds.asString());
-    // time line plays once only
-    timeline.setCycleCount(1);
-    timeline.playFromStart();
+    // check the clock a few times per second so that the label changes close to the second
+    clockTimeline = new Timeline(new KeyFrame(CLOCK_TICK, e -> clock.tick(System.nanoTime())));
+    clockTimeline.setCycleCount(Animation.INDEFINITE);
+    clock.start(System.nanoTime());
+    clockTimeline.play();
   }
 
   /**
@@ -499,87 +587,91 @@ public class CanvasController {
 
     if (!isPredictionStarted) {
       isPredictionStarted = true;
-      // create the task for the DL predictions
-      Task<Boolean> taskPredict =
-          new Task<Boolean>() {
-            protected Boolean call()
-                throws TranslateException, InterruptedException, ExecutionException {
-              // get the current time
-              int temp = seconds.intValue();
-              long tempTime = System.currentTimeMillis();
-
-              // run loop while timer is active
-              while (timeline.getStatus() != Status.STOPPED) {
-
-                // when a second has passed, run the DL predictor
-                if (temp - seconds.intValue() >= 1) {
-                  // create a future task for checking wins
-                  FutureTask<Boolean> winOrLose =
-                      new FutureTask<Boolean>(
-                          new Callable<Boolean>() {
-                            public Boolean call() throws TranslateException {
-
-                              return isWin(
-                                  model.getPredictions(
-                                      getCurrentSnapshot(), currentUser.getAccuracy()));
-                            }
-                          });
-
-                  // get the top 10 list and check if the current word is within the top 3 (EASY)
-                  Platform.runLater(winOrLose);
-                  setOutsidePrediction();
-                  getTop10Predictions();
-
-                  // set the temp time
-                  temp = seconds.intValue();
-
-                  // check if the user won
-                  if (winOrLose.get()) {
-                    timeline.pause();
-                    return true;
+      // tick the predictions of this game on the prediction service until it is won or lost,
+      // only their results are posted to the JavaFX thread
+      predictionRound = predictionService.start(this::predictTick, PREDICTION_POLL_MILLIS);
+      predictionRound
+          .getResult()
+          .whenComplete(
+              (isWon, exception) -> {
+                // a model that fails to load or to predict ends the predictions of this game
+                if (exception != null && !(exception instanceof CancellationException)) {
+                  exception.printStackTrace();
+                }
+              });
+      predictionRound
+          .getResult()
+          .thenAcceptAsync(
+              isWon -> {
+                clockTimeline.stop();
+                setCanvas();
+
+                // update the winOrLose label and use the text to speech to tell the user if the
+                // they have won or lost
+                try {
+                  if (isWon) { // true if user has won
+                    setCanvasWon();
+                    recorder.save(Outcome.WIN);
+                  } else {
+                    setCanvasLost();
+                    recorder.save(Outcome.LOSS);
                   }
+                  SceneManager.replaceUi(SceneManager.AppUi.STATISTICS, App.loadFxml("statistics"));
+                  SceneManager.replaceUi(
+                      SceneManager.AppUi.LEADERBOARD, App.loadFxml("leaderboard"));
+                  currentUser.writeData(
+                      new File(
+                          "src/main/resources/data/users",
+                          SceneManager.getMainUser().replace(" ", "_") + ".txt"));
+
+                } catch (IOException e) {
+                  e.printStackTrace();
                 }
-              }
+              },
+              Platform::runLater);
+    }
+  }
 
-              while (isZen) {
-                if ((int) (System.currentTimeMillis() - tempTime) / 1000 >= 1) {
-                  setOutsidePrediction();
-                  getTop10Predictions();
-                  tempTime = System.currentTimeMillis();
-                }
-              }
+  /**
+   * This method runs one tick of the predictions of this game. The drawing is classified when the
+   * scheduler says so, and the game ends when the drawing wins or the timer runs out. A Zen game
+   * has no timer, its predictions run until the player leaves it.
+   *
+   * @return true if the user has won, false if the time has run out, or null if the game goes on
+   * @throws ModelException If the model cannot be loaded
+   * @throws IOException If the model cannot be found on the file system
+   * @throws TranslateException If there is an error in reading the input/output of the DL model
+   * @throws InterruptedException If a running thread was interrupted
+   * @throws ExecutionException If the snapshot of the canvas has failed
+   */
+  private Boolean predictTick()
+      throws ModelException, IOException, TranslateException, InterruptedException,
+          ExecutionException {
+    // the first tick waits for the model if it is still loading
+    if (model == null) {
+      model = ModelManager.getModel();
+    }
 
-              return false;
-            }
-          };
-      // create the bg thread for the dl task
-      Thread bgPredict = new Thread(taskPredict);
-      bgPredict.start();
-
-      taskPredict.setOnSucceeded(
-          event -> {
-            setCanvas();
-
-            // update the winOrLose label and use the text to speech to tell the user if the
-            // they have won or lost
-            try {
-              if (taskPredict.get()) { // returns true if user has won
-                setCanvasWon();
-              } else {
-                setCanvasLost();
-              }
-              SceneManager.replaceUi(SceneManager.AppUi.STATISTICS, App.loadFxml("statistics"));
-              SceneManager.replaceUi(SceneManager.AppUi.LEADERBOARD, App.loadFxml("leaderboard"));
-              currentUser.writeData(
-                  new File(
-                      "src/main/resources/data/users",
-                      SceneManager.getMainUser().replace(" ", "_") + ".txt"));
-
-            } catch (InterruptedException | ExecutionException | IOException e) {
-              e.printStackTrace();
-            }
-          });
+    // the timer of a normal game has run out
+    if (!isZen && clock.isExpired(System.nanoTime())) {
+      return false;
     }
+
+    // run the DL predictor when a stroke ends or the player pauses
+    if (isPredictionDue()) {
+      // run the model once, the ranking, the top 10 list and the win check of
+      // this tick are all derived from the same prediction frame
+      PredictionFrame frame = getPredictionFrame();
+      showPredictions(frame);
+
+      // check if the user won
+      if (!isZen && isWin(frame)) {
+        clock.stop(System.nanoTime());
+        return true;
+      }
+    }
+
+    return null;
   }
 
   /**
@@ -611,7 +703,6 @@ public class CanvasController {
 
     // player shouldn't be able to get hints after the game is over
     btnHint.setDisable(true);
-    model.closeManager();
   }
 
   /**
@@ -624,16 +715,18 @@ public class CanvasController {
     lblWinOrLose.setTextFill(Color.GREEN);
     lblWinOrLose.setText("WIN");
     currentUser.addWin();
-    timePlayed = timeSettings - Integer.parseInt(lblTime.getText());
+    // the exact time from the start of the clock to the winning prediction
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(clock.getElapsedNanos(System.nanoTime()));
+    timePlayed = (int) TimeUnit.MILLISECONDS.toSeconds(elapsedMillis);
 
     // awarding the badges to players who win under certain time constraints
-    if (timePlayed < 10) {
+    if (elapsedMillis < 10_000) {
       awardBadge("/images/Under_10s_win.png");
 
-    } else if (timePlayed < 20) {
+    } else if (elapsedMillis < 20_000) {
       awardBadge("/images/Under_20s_win.png");
 
-    } else if (timePlayed < 30) {
+    } else if (elapsedMillis < 30_000) {
       awardBadge("/images/Under_30s_win.png");
     }
 
@@ -653,9 +746,8 @@ public class CanvasController {
             return null;
           }
         };
-    // run the bg thread for the task
-    Thread bgWinSpeech = new Thread(taskWin);
-    bgWinSpeech.start();
+    // run the task on the speech thread, after the speeches before it
+    AppExecutors.speech().execute(taskWin);
   }
 
   /**
@@ -677,121 +769,203 @@ public class CanvasController {
             return null;
           }
         };
-    // run the bg thread for the task
-    Thread bgLoseSpeech = new Thread(taskLose);
-    bgLoseSpeech.start();
+    // run the task on the speech thread, after the speeches before it
+    AppExecutors.speech().execute(taskLose);
   }
 
   /**
-   * Extracted from the startPredictions method so that it is usable in ALL modes. This thread tells
-   * the user where their random word is in the ranking.
+   * This method runs the DL model once on the current drawing. The drawing is rasterized from the
+   * lines queued by the canvas, so this runs on the prediction thread without waiting for the
+   * JavaFX thread. With -Dquickdraw.capture=snapshot, a scaled snapshot is taken on the JavaFX
+   * thread and shrunk here instead.
+   *
+   * @return the prediction frame of the current drawing
+   * @throws TranslateException If there is an error in reading the input/output of the DL model
+   * @throws InterruptedException If a running thread was interrupted
+   * @throws ExecutionException If the snapshot of the canvas has failed
    */
-  private void setOutsidePrediction() {
-    FutureTask<Void> outsidePrediction =
-        new FutureTask<Void>(
-            new Callable<Void>() {
-              public Void call() throws TranslateException {
-
-                // get the top 40 predictions and turn this into a string
-                List<Classification> classifications =
-                    model.getPredictions(getCurrentSnapshot(), 40);
-
-                List<String> predictionString =
-                    DoodlePrediction.getPredictionString(classifications, 40);
-
-                // check if the string/top 40 has the word, if not tell the user
-                // that they are not in the top 40
-                if (predictionString.get(0).contains(randomWord)) {
-                  for (int i = 0; i <= 40; i++) {
-
-                    // find the random word in the top 40, index in the list
-                    // represented by i
-                    if (classifications
-                        .get(i)
-                        .getClassName()
-                        .replace("_", " ")
-                        .equals(randomWord)) {
-
-                      // categorise which TOP X the random word is in and tell
-                      // the user that they are in TOP X
-                      if (i <= 10) {
-                        lblWinOrLose.setText("TOP 10");
-                      } else if (i <= 20) {
-                        lblWinOrLose.setText("TOP 20");
-                      } else if (i <= 30) {
-                        lblWinOrLose.setText("TOP 30");
-                      } else if (i <= 40) {
-                        lblWinOrLose.setText("TOP 40");
-                      }
-                    }
-                  }
-                } else {
-                  lblWinOrLose.setText("NOT EVEN CLOSE");
-                }
+  private PredictionFrame getPredictionFrame()
+      throws TranslateException, InterruptedException, ExecutionException {
+    long start = System.nanoTime();
+    // the version is read before the queued lines are drawn, so strokes drawn while the model
+    // runs are predicted on the next tick
+    predictedVersion = canvasVersion;
+    scheduler.onPredicted(start);
+
+    // each stage is timed on its own for the performance HUD
+    DoodleInput input;
+    if (modelCapture == null) {
+      input = rasterizer.rasterize();
+      start = PerformanceMonitor.record(Metric.RASTERIZE, start);
+    } else {
+      FutureTask<int[]> capture = new FutureTask<>(modelCapture::capture);
+      Platform.runLater(capture);
+      int[] pixels = capture.get();
+      start = PerformanceMonitor.record(Metric.SNAPSHOT, start);
+
+      float[] gray =
+          downsampler.downsample(pixels, modelCapture.getWidth(), modelCapture.getHeight());
+      System.arraycopy(gray, 0, snapshotInput.getPixels(), 0, gray.length);
+      input = snapshotInput;
+      start = PerformanceMonitor.record(Metric.PREPROCESS, start);
+    }
+    PredictionFrame frame = model.getPredictionFrame(input);
+    PerformanceMonitor.record(Metric.INFERENCE, start);
 
-                return null;
-              }
-            });
+    return frame;
+  }
 
-    Platform.runLater(outsidePrediction);
+  /**
+   * This method checks if the canvas has been drawn on or cleared since the last prediction.
+   *
+   * @return true if the last prediction frame is out of date
+   */
+  private boolean isCanvasChanged() {
+    return predictedVersion != canvasVersion;
   }
 
   /**
-   * This method runs the top 10 prediction future task and sets the prediction string
+   * This method checks if the drawing should be classified now: an unchanged drawing gives the same
+   * predictions, and a changed one waits for the end of the stroke, a pause or the maximum interval
+   * between predictions.
    *
-   * @throws ExecutionException If retrieving result from a task has failed
-   * @throws InterruptedException If a running thread was interrupted
+   * @return true if the prediction loop should run the model
+   */
+  private boolean isPredictionDue() {
+    return isCanvasChanged() && scheduler.isDue(System.nanoTime());
+  }
+
+  /**
+   * This method shows the results of a prediction frame: where the random word is in the ranking
+   * and the top 10 predictions. The texts are built on the prediction worker, the JavaFX thread
+   * only sets them.
+   *
+   * @param frame The DL predictions of the current tick
    */
-  private void getTop10Predictions() throws InterruptedException, ExecutionException {
-    // create a future task for getting the prediction string
-    // required for accessing the variable from outside platform run later
-    FutureTask<List<String>> predict =
-        new FutureTask<List<String>>(
-            new Callable<List<String>>() {
-              public List<String> call() throws TranslateException {
-
-                // get the list of the top 10 classifications and format the list into
-                // stringbuilder
-                return DoodlePrediction.getPredictionString(
-                    model.getPredictions(getCurrentSnapshot(), 10), currentUser.getAccuracy());
-              }
-            });
-
-    Platform.runLater(predict);
+  private void showPredictions(PredictionFrame frame) {
+    String rankText = getRankText(frame);
+    List<String> predictionString = frame.getPredictionString(10, currentUser.getAccuracy());
+    Color topColor = getTopColor(frame);
+
+    Runnable update =
+        () -> {
+          long start = System.nanoTime();
+          lblWinOrLose.setText(rankText);
+          setTop10Predictions(predictionString, topColor);
+          PerformanceMonitor.record(Metric.UI_UPDATE, start);
+        };
+
+    // latest frame wins: when the JavaFX thread has not shown the last results yet, they are
+    // replaced instead of queueing another update
+    if (pendingUpdate.getAndSet(update) == null) {
+      Platform.runLater(() -> pendingUpdate.getAndSet(null).run());
+    }
+  }
+
+  /**
+   * This method toggles the performance HUD when F3 is pressed, so that staff can see which stage
+   * of the predictions is slow during a game.
+   *
+   * @param event The key pressed in the canvas page
+   */
+  @FXML
+  private void onKeyPressed(KeyEvent event) {
+    if (event.getCode() == KeyCode.F3) {
+      showHud(!PerformanceMonitor.isHudVisible());
+      event.consume();
+    }
+  }
+
+  /**
+   * This method shows or hides the performance HUD over the canvas. The HUD is not part of the
+   * canvas, so it never shows in the drawings saved by the player.
+   *
+   * @param visible true to show the HUD
+   */
+  private void showHud(boolean visible) {
+    PerformanceMonitor.setHudVisible(visible);
+    lblPerformance.setVisible(visible);
+
+    if (visible) {
+      updateHud();
+      hudTimeline.play();
+    } else {
+      hudTimeline.stop();
+    }
+  }
+
+  /** This method refreshes the performance HUD with the latest latencies and memory. */
+  private void updateHud() {
+    lblPerformance.setText(PerformanceMonitor.getReport());
+  }
+
+  /**
+   * Extracted from the startPredictions method so that it is usable in ALL modes. This tells the
+   * user where their random word is in the ranking.
+   *
+   * @param frame The DL predictions of the current tick
+   * @return the text of the ranking label
+   */
+  private String getRankText(PredictionFrame frame) {
+    // find the random word in the ranking, 0 being the most likely category
+    int rank = frame.getRank(randomWord);
+
+    // categorise which TOP X the random word is in and tell the user that they are in
+    // TOP X, if it is not in the top 40 tell the user that they are not even close
+    if (rank < 0 || rank >= 40) {
+      return "NOT EVEN CLOSE";
+    } else if (rank < 10) {
+      return "TOP 10";
+    } else if (rank < 20) {
+      return "TOP 20";
+    } else if (rank < 30) {
+      return "TOP 30";
+    } else {
+      return "TOP 40";
+    }
+  }
+
+  /**
+   * This method picks the colour of the top x predictions, based on the conditions met in isWin.
+   *
+   * @param frame The DL predictions of the current tick
+   * @return the colour of the top x predictions
+   */
+  private Color getTopColor(PredictionFrame frame) {
     // don't show the colorings since prediction and accuracy settings aren't part of
     // zen mode.
-    Platform.runLater(
-        () -> {
-          try {
-            txtFlowPrediction.getChildren().clear();
-            // this refers to the top x in accuracy settings, this will be
-            // coloured based on the conditions met in isWin
-            Text topX = new Text(predict.get().get(0));
-
-            if (!isZen) {
-              if (topX.getText().contains(randomWord)) {
-                if (isWin(model.getPredictions(getCurrentSnapshot(), currentUser.getAccuracy()))) {
-                  topX.setFill(Color.GREEN);
-                } else {
-                  topX.setFill(Color.YELLOW); // if confidence isnt met
-                }
-              } else {
-                topX.setFill(Color.RED);
-              }
-            } else {
-              // set the topX text to white, do not differentiate the topX from the other
-              // part in Zen mode since accuracy settings is not relevant
-              topX.setFill(Color.WHITE);
-            }
-            Text secondString = new Text(predict.get().get(1));
-            secondString.setFill(Color.WHITE);
-            txtFlowPrediction.getChildren().addAll(topX, secondString);
+    if (!isZen) {
+      if (frame.isInTopK(randomWord, currentUser.getAccuracy())) {
+        if (isWin(frame)) {
+          return Color.GREEN;
+        } else {
+          return Color.YELLOW; // if confidence isnt met
+        }
+      } else {
+        return Color.RED;
+      }
+    } else {
+      // set the topX text to white, do not differentiate the topX from the other
+      // part in Zen mode since accuracy settings is not relevant
+      return Color.WHITE;
+    }
+  }
 
-          } catch (InterruptedException | ExecutionException | TranslateException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-          }
-        });
+  /**
+   * This method sets the top 10 predictions of a prediction frame in the text flow.
+   *
+   * @param predictionString The top x and the other top 10 predictions, formatted
+   * @param topColor The colour of the top x predictions
+   */
+  private void setTop10Predictions(List<String> predictionString, Color topColor) {
+    txtFlowPrediction.getChildren().clear();
+    // this refers to the top x in accuracy settings
+    Text topX = new Text(predictionString.get(0));
+    topX.setFill(topColor);
+
+    Text secondString = new Text(predictionString.get(1));
+    secondString.setFill(Color.WHITE);
+    txtFlowPrediction.getChildren().addAll(topX, secondString);
   }
 
   /**
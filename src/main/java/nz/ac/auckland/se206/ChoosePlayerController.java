@@ -11,6 +11,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.ListView;
 import javafx.scene.media.AudioClip;
 import javafx.stage.Stage;
+import nz.ac.auckland.se206.util.AppExecutors;
 
 public class ChoosePlayerController {
 
@@ -88,7 +89,7 @@ public class ChoosePlayerController {
    */
   @FXML
   private void onCreate() throws IOException {
-    // creating a thread for the sound effect when create player button is clicked
+    // creating a task for the sound effect when create player button is clicked
     Task<Void> taskPlay =
         new Task<Void>() {
           protected Void call() {
@@ -97,8 +98,7 @@ public class ChoosePlayerController {
             return null;
           }
         };
-    Thread soundEffect = new Thread(taskPlay);
-    soundEffect.start();
+    AppExecutors.audio().execute(taskPlay);
 
     // creating the create player pop up
     FXMLLoader loader = new FXMLLoader();
@@ -7,6 +7,7 @@ import javafx.scene.control.Button;
 import javafx.scene.control.TextField;
 import javafx.scene.media.AudioClip;
 import javafx.stage.Stage;
+import nz.ac.auckland.se206.util.AppExecutors;
 
 public class CreatePlayerController {
   @FXML private Button btnOk;
@@ -29,7 +30,7 @@ public class CreatePlayerController {
    */
   @FXML
   private void onClose() throws IOException {
-    // creating a thread for the sound effect when join button is clicked
+    // creating a task for the sound effect when join button is clicked
     Task<Void> taskPlay =
         new Task<Void>() {
           protected Void call() {
@@ -38,8 +39,7 @@ public class CreatePlayerController {
             return null;
           }
         };
-    Thread soundEffect = new Thread(taskPlay);
-    soundEffect.start();
+    AppExecutors.audio().execute(taskPlay);
     String initialInput = txtPlayerName.getText().trim();
     // the initial name based on user input
     if (!initialInput.equalsIgnoreCase("")) {
@@ -9,6 +9,7 @@ import javafx.scene.control.ToggleButton;
 import javafx.scene.layout.VBox;
 import javafx.scene.media.AudioClip;
 import nz.ac.auckland.se206.UserProfile.Mode;
+import nz.ac.auckland.se206.util.PerformanceMonitor;
 
 public class GameSettingsController {
   @FXML private Button btnMenu;
@@ -28,11 +29,14 @@ public class GameSettingsController {
   @FXML private ToggleButton rbtnConfidenceM;
   @FXML private ToggleButton rbtnConfidenceH;
   @FXML private ToggleButton rbtnConfidenceMaster;
+  @FXML private ToggleButton rbtnHudOff;
+  @FXML private ToggleButton rbtnHudOn;
   @FXML private Label lblCurrentMode;
   @FXML private Label lblAccuracyDesc;
   @FXML private Label lblWordsDesc;
   @FXML private Label lblTimeDesc;
   @FXML private Label lblConfidenceDesc;
+  @FXML private Label lblHudDesc;
   @FXML private VBox vboxSettings;
 
   private UserProfile currentUser = SceneManager.getProfile(SceneManager.getMainUser());
@@ -49,13 +53,14 @@ public class GameSettingsController {
     setWordsSettings();
     setTimeSettings();
     setConfidenceSettings();
+    setHudSettings();
 
     // get the previous node and update the current mode label
     setCurrentModeLabel();
     // check if the current mode is Zen, where we disable the visibility of the
-    // game settings
+    // game settings. The HUD is not a game setting, it stays and moves up in their place
     if (currentUser.isZenMode()) {
-      vboxSettings.setVisible(false);
+      setGameSettingsVisible(false);
     }
   }
 
@@ -155,6 +160,20 @@ public class GameSettingsController {
     }
   }
 
+  private void setHudSettings() {
+    // the performance HUD belongs to the kiosk rather than to the user, so it is not saved in the
+    // user data file
+    if (PerformanceMonitor.isHudVisible()) {
+      rbtnHudOn.setSelected(true);
+      lblHudDesc.setText("*prediction latencies and memory are shown in game, F3 toggles them");
+      playSelectSound();
+    } else {
+      rbtnHudOff.setSelected(true);
+      lblHudDesc.setText("*press F3 in game to show prediction latencies and memory");
+      playSelectSound();
+    }
+  }
+
   /**
    * This method is executed when the cross button is clicked, which loads the menu instance of the
    * user.
@@ -362,6 +381,23 @@ public class GameSettingsController {
     setConfidenceSettings();
   }
 
+  /** This hides the performance HUD in the next games and updates the game settings page. */
+  @FXML
+  private void onSetHudOff() {
+    PerformanceMonitor.setHudVisible(false);
+    setHudSettings();
+  }
+
+  /**
+   * This shows the performance HUD over the canvas in the next games and updates the game settings
+   * page.
+   */
+  @FXML
+  private void onSetHudOn() {
+    PerformanceMonitor.setHudVisible(true);
+    setHudSettings();
+  }
+
   /**
    * This method sets the mode settings to Zen mode, updates the game settings page by making the
    * game settings invisible to the user: this is because none of the games settings is integrated
@@ -374,7 +410,7 @@ public class GameSettingsController {
     currentUser.setMode(Mode.ZEN);
     // set the current mode label to zen
     setCurrentModeLabel();
-    vboxSettings.setVisible(false);
+    setGameSettingsVisible(false);
     currentUser.saveData();
   }
 
@@ -389,7 +425,7 @@ public class GameSettingsController {
     currentUser.setMode(Mode.HIDDENWORD);
     // set the current mode label to zen
     setCurrentModeLabel();
-    vboxSettings.setVisible(true);
+    setGameSettingsVisible(true);
     currentUser.saveData();
   }
 
@@ -405,10 +441,21 @@ public class GameSettingsController {
     // set the current mode label to normal
     setCurrentModeLabel();
     // enable the visibilty of the settings
-    vboxSettings.setVisible(true);
+    setGameSettingsVisible(true);
     currentUser.saveData();
   }
 
+  /**
+   * This method shows or hides the game settings. Hidden settings take no space, so the HUD setting
+   * below them, which applies to every mode, moves up in their place.
+   *
+   * @param visible true to show the game settings
+   */
+  private void setGameSettingsVisible(boolean visible) {
+    vboxSettings.setVisible(visible);
+    vboxSettings.setManaged(visible);
+  }
+
   private void setCurrentModeLabel() {
     // get the previous node and update the current mode label
     lblCurrentMode.setText("Current Mode: " + currentUser.getMode());
@@ -1,11 +1,13 @@
 package nz.ac.auckland.se206;
 
 import java.io.IOException;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.media.AudioClip;
+import nz.ac.auckland.se206.ml.ModelManager;
 
 public class MenuController {
 
@@ -50,6 +52,43 @@ public class MenuController {
     // play sound
     new AudioClip(getClass().getResource("/sounds/ButtonClickSound.wav").toExternalForm()).play();
 
+    if (!ModelManager.isModelLoaded()) {
+      // the model is still loading in the background, show it on the button and create the
+      // game as soon as the model is ready
+      String buttonText = btnNewGame.getText();
+      btnNewGame.setText("loading...");
+      btnNewGame.setDisable(true);
+
+      ModelManager.preload()
+          .whenComplete(
+              (model, exception) ->
+                  Platform.runLater(
+                      () -> {
+                        btnNewGame.setText(buttonText);
+                        btnNewGame.setDisable(false);
+                        if (exception != null) {
+                          exception.printStackTrace();
+                          return;
+                        }
+
+                        try {
+                          createGame();
+                        } catch (IOException e) {
+                          e.printStackTrace();
+                        }
+                      }));
+      return;
+    }
+
+    createGame();
+  }
+
+  /**
+   * Creates a new instance of the canvas page and loads that page.
+   *
+   * @throws IOException if the fxml file we are trying to load is not found
+   */
+  private void createGame() throws IOException {
     // check if there's a previous game instance
     if (SceneManager.ifPrevGameExists()) {
       // replace the game instance with a new game instance
@@ -1,5 +1,6 @@
 package nz.ac.auckland.se206;
 
+import com.opencsv.exceptions.CsvException;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -8,6 +9,8 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import nz.ac.auckland.se206.words.CategoryIndex;
+import nz.ac.auckland.se206.words.WordScheduler;
 
 public class UserProfile {
 
@@ -28,6 +31,9 @@ public class UserProfile {
   // should be given to draw ALL words in zen mode but should
   // not be repeated AND not added to the list of words
   private ArrayList<String> zenWords;
+  // the schedulers of the two lists, built from them when a game first needs them
+  private WordScheduler wordScheduler;
+  private WordScheduler zenWordScheduler;
   private String bestName;
   private int bestTime;
   private int rounds;
@@ -147,6 +153,8 @@ public class UserProfile {
         new ArrayList<String>(
             Arrays.asList(
                 reader.readLine().replace("[", "").replace("]", "").replace(" ", "").split(",")));
+    this.wordScheduler = null;
+    this.zenWordScheduler = null;
     this.bestName = reader.readLine();
     this.bestTime = Integer.valueOf(reader.readLine());
     this.rounds = Integer.valueOf(reader.readLine());
@@ -185,6 +193,24 @@ public class UserProfile {
    */
   public void addWord(String word) {
     this.words.add(word);
+    if (wordScheduler != null) {
+      wordScheduler.markPlayed(word);
+    }
+  }
+
+  /**
+   * This method returns the scheduler picking the words the user has not played yet in the current
+   * round, built from the list of played words the first time.
+   *
+   * @return the word scheduler of the normal and hidden word modes
+   * @throws IOException If the category file cannot be read
+   * @throws CsvException If there is an issue with the opencsv loading
+   */
+  public WordScheduler getWordScheduler() throws IOException, CsvException {
+    if (wordScheduler == null) {
+      wordScheduler = new WordScheduler(CategoryIndex.getInstance(), words);
+    }
+    return wordScheduler;
   }
 
   public int getBestTime() {
@@ -222,6 +248,9 @@ public class UserProfile {
    */
   public void newRound() {
     this.words = new ArrayList<String>();
+    if (wordScheduler != null) {
+      wordScheduler.reset();
+    }
     addRound();
   }
 
@@ -304,6 +333,24 @@ public class UserProfile {
    */
   public void addZenWords(String word) {
     this.zenWords.add(word);
+    if (zenWordScheduler != null) {
+      zenWordScheduler.markPlayed(word);
+    }
+  }
+
+  /**
+   * This method returns the scheduler picking the words the user has not played yet in the current
+   * Zen round, built from the list of played Zen words the first time.
+   *
+   * @return the word scheduler of the Zen mode
+   * @throws IOException If the category file cannot be read
+   * @throws CsvException If there is an issue with the opencsv loading
+   */
+  public WordScheduler getZenWordScheduler() throws IOException, CsvException {
+    if (zenWordScheduler == null) {
+      zenWordScheduler = new WordScheduler(CategoryIndex.getInstance(), zenWords);
+    }
+    return zenWordScheduler;
   }
 
   /**
@@ -313,6 +360,9 @@ public class UserProfile {
    */
   public void newZenRound() {
     this.zenWords = new ArrayList<String>();
+    if (zenWordScheduler != null) {
+      zenWordScheduler.reset();
+    }
     this.zenRounds++;
   }
 
@@ -0,0 +1,185 @@
+package nz.ac.auckland.se206.ml;
+
+import ai.djl.ModelException;
+import ai.djl.translate.TranslateException;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+import nz.ac.auckland.se206.util.PerformanceMonitor;
+
+/**
+ * Compares the inference backends on the machine it runs on, reporting for each one the time to
+ * load the model, the latency of the first and of the following predictions, and the memory used by
+ * the process. Each backend is measured in a JVM of its own so that the resident memory of one
+ * engine does not count against the other.
+ *
+ * <p>Usage: {@code BackendBenchmark [all|pytorch|onnx] [iterations] [image]}, e.g. through {@code
+ * ./mvnw compile exec:java -Dexec.mainClass=nz.ac.auckland.se206.ml.BackendBenchmark
+ * -Dexec.args="all 200"}. Without an image, a blank canvas of the size of the game is predicted.
+ */
+public class BackendBenchmark {
+
+  private static final int DEFAULT_ITERATIONS = 200;
+  private static final int WARM_UP_PREDICTIONS = 10;
+
+  // size of the drawable canvas of the game
+  private static final int CANVAS_WIDTH = 937;
+  private static final int CANVAS_HEIGHT = 688;
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args The backend to measure or all, the number of predictions and an optional image.
+   * @throws Exception If a backend cannot be loaded or a child JVM fails.
+   */
+  public static void main(final String[] args) throws Exception {
+    final String backend = args.length > 0 ? args[0] : "all";
+    final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_ITERATIONS;
+    final String image = args.length > 2 ? args[2] : null;
+
+    if (!backend.equalsIgnoreCase("all")) {
+      run(InferenceBackend.fromName(backend), iterations, image);
+      return;
+    }
+
+    for (final InferenceBackend each : InferenceBackend.values()) {
+      final int exitCode = runInChildJvm(each, iterations, image);
+      if (exitCode != 0) {
+        System.err.println(each.getEngineName() + " benchmark failed with exit code " + exitCode);
+      }
+    }
+  }
+
+  /**
+   * Measures one backend in the current JVM and prints a single line report.
+   *
+   * @param backend The backend to measure
+   * @param iterations The number of timed predictions
+   * @param imagePath The image to predict, or null for a blank canvas
+   * @throws ModelException If the model cannot be loaded
+   * @throws IOException If the model or the image cannot be read
+   * @throws TranslateException If a prediction fails
+   */
+  private static void run(
+      final InferenceBackend backend, final int iterations, final String imagePath)
+      throws ModelException, IOException, TranslateException {
+    final BufferedImage image =
+        imagePath == null
+            ? new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB)
+            : ImageIO.read(new File(imagePath));
+    final long rssBefore = PerformanceMonitor.readStatusKilobytes("VmRSS:");
+
+    // loading includes the native engine, since nothing else has loaded it in this JVM
+    long start = System.nanoTime();
+    final DoodlePrediction model = new DoodlePrediction(backend, 1);
+    final double loadMillis = (System.nanoTime() - start) / 1e6;
+
+    try {
+      start = System.nanoTime();
+      model.getPredictionFrame(image);
+      final double firstMillis = (System.nanoTime() - start) / 1e6;
+
+      for (int i = 0; i < WARM_UP_PREDICTIONS; i++) {
+        model.getPredictionFrame(image);
+      }
+
+      final long[] latencies = new long[iterations];
+      for (int i = 0; i < iterations; i++) {
+        start = System.nanoTime();
+        model.getPredictionFrame(image);
+        latencies[i] = System.nanoTime() - start;
+      }
+      Arrays.sort(latencies);
+
+      long total = 0;
+      for (final long latency : latencies) {
+        total += latency;
+      }
+      final long rssAfter = PerformanceMonitor.readStatusKilobytes("VmRSS:");
+
+      System.out.printf(
+          "%-12s load %7.1f ms | first %6.1f ms | mean %6.2f ms | p50 %6.2f ms | p95 %6.2f ms"
+              + " | max %6.2f ms | rss %s (+%s) | peak rss %s%n",
+          backend.getEngineName(),
+          loadMillis,
+          firstMillis,
+          total / 1e6 / iterations,
+          percentile(latencies, 0.50),
+          percentile(latencies, 0.95),
+          latencies[iterations - 1] / 1e6,
+          formatKilobytes(rssAfter),
+          formatKilobytes(rssBefore < 0 ? -1 : rssAfter - rssBefore),
+          formatKilobytes(PerformanceMonitor.readStatusKilobytes("VmHWM:")));
+    } finally {
+      model.closeManager();
+    }
+  }
+
+  /**
+   * Runs the benchmark of one backend in a new JVM with the same classpath.
+   *
+   * @param backend The backend to measure
+   * @param iterations The number of timed predictions
+   * @param imagePath The image to predict, or null for a blank canvas
+   * @return the exit code of the child JVM
+   * @throws IOException If the child JVM cannot be started
+   * @throws InterruptedException If interrupted while waiting for the child JVM
+   * @throws URISyntaxException If the classpath cannot be read
+   */
+  private static int runInChildJvm(
+      final InferenceBackend backend, final int iterations, final String imagePath)
+      throws IOException, InterruptedException, URISyntaxException {
+    final List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    final String cacheDir = System.getProperty(ModelCache.CACHE_DIR_PROPERTY);
+    if (cacheDir != null) {
+      command.add("-D" + ModelCache.CACHE_DIR_PROPERTY + "=" + cacheDir);
+    }
+    command.add("-cp");
+    command.add(getClassPath());
+    command.add(BackendBenchmark.class.getName());
+    command.add(backend.name());
+    command.add(Integer.toString(iterations));
+    if (imagePath != null) {
+      command.add(imagePath);
+    }
+
+    return new ProcessBuilder(command).inheritIO().start().waitFor();
+  }
+
+  /**
+   * Finds the classpath of the game, which is not the JVM classpath when run from Maven.
+   *
+   * @return the classpath to start a child JVM with
+   * @throws URISyntaxException If a classpath entry is not a valid file URL
+   */
+  private static String getClassPath() throws URISyntaxException {
+    final ClassLoader loader = BackendBenchmark.class.getClassLoader();
+    if (!(loader instanceof URLClassLoader)) {
+      return System.getProperty("java.class.path");
+    }
+
+    final List<String> entries = new ArrayList<>();
+    for (final URL url : ((URLClassLoader) loader).getURLs()) {
+      entries.add(Paths.get(url.toURI()).toString());
+    }
+    return String.join(File.pathSeparator, entries);
+  }
+
+  private static double percentile(final long[] sorted, final double percentile) {
+    final int index = (int) Math.ceil(percentile * sorted.length) - 1;
+    return sorted[Math.max(0, index)] / 1e6;
+  }
+
+  private static String formatKilobytes(final long kilobytes) {
+    return kilobytes < 0 ? "n/a" : String.format("%.1f MB", kilobytes / 1024.0);
+  }
+}
@@ -0,0 +1,654 @@
+package nz.ac.auckland.se206.ml;
+
+import ai.djl.ModelException;
+import ai.djl.modality.Classifications.Classification;
+import ai.djl.translate.TranslateException;
+import com.opencsv.CSVWriter;
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.imageio.ImageIO;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Scores a large number of saved drawings, e.g. to re-check an archive of drawings after a model
+ * update. The images are decoded and downsampled on every core while a single thread feeds them to
+ * the shared model in batches, and the top K predictions of each image are written to a CSV or JSON
+ * lines report as soon as they are known, in the order the images are decoded.
+ *
+ * <p>Usage: {@code BatchScorer <directory|glob> <k> [--format csv|jsonl] [--output file] [--batch
+ * size] [--threads count]}. A directory is searched recursively for images, a glob such as {@code
+ * "saved/**.bmp"} is matched against the paths below its first wildcard. The report goes to the
+ * standard output unless a file is given, and the throughput is printed at the end.
+ */
+public class BatchScorer {
+
+  private static final Set<String> IMAGE_EXTENSIONS = Set.of("bmp", "png", "jpg", "jpeg", "gif");
+
+  /**
+   * Scores every image matching the arguments.
+   *
+   * @param args The images, the number of top K predictions and the options, see the class
+   * @throws ModelException If there is an error in reading the input/output of the DL model.
+   * @throws IOException If the images cannot be listed or the report cannot be written.
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   * @throws InterruptedException If the scoring is interrupted.
+   */
+  public static void main(final String[] args)
+      throws ModelException, IOException, TranslateException, InterruptedException {
+    final Options options = Options.parse(args);
+
+    final List<Path> images = findImages(options.pattern);
+    if (images.isEmpty()) {
+      throw new IllegalArgumentException("No image matches " + options.pattern);
+    }
+
+    // the summary must not end up in a report written to the standard output
+    final PrintStream console = options.output == null ? System.err : System.out;
+    // closing the report must not close the standard output
+    final Writer writer =
+        options.output == null
+            ? new UnclosedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+            : Files.newBufferedWriter(options.output, StandardCharsets.UTF_8);
+
+    final DoodlePrediction model = new DoodlePrediction();
+    try (Report report = createReport(options.format, new BufferedWriter(writer), options.k)) {
+      console.println(
+          "Scoring " + images.size() + " images on " + model.getBackend().getEngineName());
+      final Summary summary =
+          new BatchScorer(model, options.k, options.batchSize, options.threads)
+              .score(images, report);
+      report.flush();
+      console.println(summary);
+    } finally {
+      model.closeManager();
+    }
+  }
+
+  /**
+   * Lists the images of a directory, recursively, or the images matching a glob.
+   *
+   * @param pattern A directory, a single image or a glob of images
+   * @return the images, sorted by path
+   * @throws IOException If a directory cannot be read
+   */
+  public static List<Path> findImages(final String pattern) throws IOException {
+    return findImages(Paths.get("."), pattern);
+  }
+
+  /**
+   * Lists the images of a directory, recursively, or the images matching a glob, where relative
+   * paths start from a working directory.
+   *
+   * @param workingDirectory The directory of the relative paths and globs
+   * @param pattern A directory, a single image or a glob of images
+   * @return the images, sorted by path
+   * @throws IOException If a directory cannot be read
+   */
+  static List<Path> findImages(final Path workingDirectory, final String pattern)
+      throws IOException {
+    final Matcher wildcard = Pattern.compile("[*?\\[{]").matcher(pattern);
+    if (!wildcard.find()) {
+      final Path path = workingDirectory.resolve(pattern);
+      return Files.isRegularFile(path) ? List.of(path.normalize()) : walk(path, file -> true);
+    }
+
+    // search below the directories before the first wildcard
+    final String prefix = pattern.substring(0, wildcard.start());
+    final int separator = Math.max(prefix.lastIndexOf('/'), prefix.lastIndexOf(File.separatorChar));
+    final Path base = workingDirectory.resolve(prefix.substring(0, separator + 1));
+    final PathMatcher glob = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+
+    // a relative glob is matched against the paths from the working directory, which the walk
+    // starts with, e.g. "./"
+    if (Paths.get(prefix).isAbsolute()) {
+      return walk(base, glob);
+    }
+    return walk(base, file -> glob.matches(workingDirectory.relativize(file)));
+  }
+
+  /**
+   * Lists the images below a directory that a matcher accepts.
+   *
+   * @param directory The directory to search
+   * @param matcher The paths to keep
+   * @return the images, sorted by path
+   * @throws IOException If the directory cannot be read
+   */
+  private static List<Path> walk(final Path directory, final PathMatcher matcher)
+      throws IOException {
+    try (Stream<Path> files = Files.walk(directory)) {
+      return files
+          .filter(Files::isRegularFile)
+          .filter(BatchScorer::isImage)
+          .filter(matcher::matches)
+          .map(Path::normalize)
+          .sorted()
+          .collect(Collectors.toList());
+    }
+  }
+
+  private static boolean isImage(final Path file) {
+    final String name = file.getFileName().toString();
+    final int dot = name.lastIndexOf('.');
+
+    return dot >= 0 && IMAGE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+  }
+
+  /**
+   * Creates the report of a format.
+   *
+   * @param format The format of the report, csv or jsonl
+   * @param writer The writer of the report, closed with it
+   * @param k The number of top predictions reported for each image
+   * @return the report
+   */
+  static Report createReport(final String format, final Writer writer, final int k) {
+    switch (format) {
+      case "csv":
+        return new CsvReport(writer, k);
+      case "jsonl":
+      case "json":
+        return new JsonLinesReport(writer);
+      default:
+        throw new IllegalArgumentException(
+            "Unknown report format " + format + ", use csv or jsonl");
+    }
+  }
+
+  /** Runs a batch of inputs through the model. */
+  @FunctionalInterface
+  interface BatchModel {
+
+    /**
+     * Predicts a batch of inputs.
+     *
+     * @param inputs The inputs, all of the same size
+     * @return the prediction frame of each input, in the same order
+     * @throws TranslateException If there is an error in reading the input/output of the DL model.
+     */
+    List<PredictionFrame> predict(List<DoodleInput> inputs) throws TranslateException;
+  }
+
+  private final BatchModel model;
+  private final int k;
+  private final int batchSize;
+  private final int threads;
+
+  /**
+   * Constructs a scorer feeding a shared model.
+   *
+   * @param model The model to score the images with
+   * @param k The number of top predictions to report for each image
+   * @param batchSize The maximum number of images run through the model at once
+   * @param threads The number of threads decoding and downsampling the images
+   */
+  public BatchScorer(
+      final DoodlePrediction model, final int k, final int batchSize, final int threads) {
+    this(model::getBatchPredictionFrames, k, batchSize, threads);
+  }
+
+  /**
+   * Constructs a scorer feeding any batch model, e.g. a fake one in the tests.
+   *
+   * @param model Runs the batches of images
+   * @param k The number of top predictions to report for each image
+   * @param batchSize The maximum number of images run through the model at once
+   * @param threads The number of threads decoding and downsampling the images
+   */
+  BatchScorer(final BatchModel model, final int k, final int batchSize, final int threads) {
+    if (k < 1 || batchSize < 1 || threads < 1) {
+      throw new IllegalArgumentException("K, the batch size and the threads must be at least 1");
+    }
+
+    this.model = model;
+    this.k = k;
+    this.batchSize = batchSize;
+    this.threads = threads;
+  }
+
+  /**
+   * Scores the images and writes the top K predictions of each one to the report. An image that
+   * cannot be read is reported with its error, and the others are still scored.
+   *
+   * @param images The images to score
+   * @param report The report to write to
+   * @return the throughput of the scoring
+   * @throws IOException If the report cannot be written
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   * @throws InterruptedException If the scoring is interrupted
+   */
+  public Summary score(final List<Path> images, final Report report)
+      throws IOException, TranslateException, InterruptedException {
+    final long start = System.nanoTime();
+    final Summary summary = new Summary();
+
+    // bounds the decoded images waiting for the model, so that memory does not grow with the input
+    final Semaphore pending = new Semaphore(batchSize * 2 + threads);
+    final AtomicInteger threadCount = new AtomicInteger();
+    final ExecutorService decoders =
+        Executors.newFixedThreadPool(
+            threads,
+            runnable -> {
+              final Thread thread =
+                  new Thread(runnable, "batch-decoder-" + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    final CompletionService<Decoded> decoded = new ExecutorCompletionService<>(decoders);
+
+    final Thread feeder =
+        new Thread(
+            () -> {
+              try {
+                for (final Path image : images) {
+                  pending.acquire();
+                  decoded.submit(() -> decode(image));
+                }
+              } catch (InterruptedException | RejectedExecutionException e) {
+                // the scoring stopped early, the remaining images are not needed
+              }
+            },
+            "batch-feeder");
+    feeder.setDaemon(true);
+    feeder.start();
+
+    try {
+      final List<Decoded> batch = new ArrayList<>(batchSize);
+      for (int i = 0; i < images.size(); i++) {
+        final Decoded image = decoded.take().get();
+        summary.decodeNanos += image.nanos;
+
+        if (image.input == null) {
+          report.writeError(image.file, image.error);
+          summary.failed++;
+          pending.release();
+          continue;
+        }
+
+        // images in a batch are stacked together, so they must all have the same size
+        if (batch.size() == batchSize
+            || (!batch.isEmpty() && !isSameSize(batch.get(0).input, image.input))) {
+          scoreBatch(batch, report, summary, pending);
+        }
+        batch.add(image);
+      }
+      scoreBatch(batch, report, summary, pending);
+    } catch (ExecutionException e) {
+      // decode catches the errors of the images, anything else is a bug
+      throw new IllegalStateException(e.getCause());
+    } finally {
+      feeder.interrupt();
+      decoders.shutdownNow();
+    }
+
+    summary.wallNanos = System.nanoTime() - start;
+    return summary;
+  }
+
+  /**
+   * Reads and downsamples one image on a decoder thread.
+   *
+   * @param file The image to read
+   * @return the model input of the image, or the reason it cannot be read
+   */
+  private static Decoded decode(final Path file) {
+    final long start = System.nanoTime();
+
+    try {
+      final BufferedImage image = ImageIO.read(file.toFile());
+      if (image == null) {
+        return new Decoded(file, null, "unsupported image format", System.nanoTime() - start);
+      }
+
+      // the input is copied out of the downsampler of this thread, which the next image reuses
+      return new Decoded(
+          file, DoodlePrediction.toModelInput(image, true), null, System.nanoTime() - start);
+    } catch (IOException | RuntimeException e) {
+      return new Decoded(file, null, e.toString(), System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Runs the pending batch through the model, reports it and clears it.
+   *
+   * @param batch The decoded images of the batch, all of the same size
+   * @param report The report to write to
+   * @param summary The throughput to update
+   * @param pending The permits of the decoded images waiting for the model
+   * @throws IOException If the report cannot be written
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  private void scoreBatch(
+      final List<Decoded> batch,
+      final Report report,
+      final Summary summary,
+      final Semaphore pending)
+      throws IOException, TranslateException {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    final List<DoodleInput> inputs = new ArrayList<>(batch.size());
+    for (final Decoded image : batch) {
+      inputs.add(image.input);
+    }
+
+    final long start = System.nanoTime();
+    final List<PredictionFrame> frames = model.predict(inputs);
+    summary.inferenceNanos += System.nanoTime() - start;
+    summary.batches++;
+
+    for (int i = 0; i < batch.size(); i++) {
+      report.write(batch.get(i).file, frames.get(i).getTopK(k));
+      summary.scored++;
+    }
+    pending.release(batch.size());
+    batch.clear();
+  }
+
+  private static boolean isSameSize(final DoodleInput first, final DoodleInput second) {
+    return first.getWidth() == second.getWidth() && first.getHeight() == second.getHeight();
+  }
+
+  /** The arguments of the command line. */
+  static final class Options {
+    private String pattern;
+    private int k;
+    private String format = "csv";
+    private Path output = null;
+    private int batchSize = DoodlePrediction.DEFAULT_BATCH_SIZE;
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private Options() {}
+
+    /**
+     * Reads the arguments of the command line.
+     *
+     * @param args The images, the number of top K predictions and the options, see the class
+     * @return the options, with the defaults for the ones that are not given
+     * @throws IllegalArgumentException If an argument is missing or unknown
+     * @throws NumberFormatException If a number cannot be read
+     */
+    static Options parse(final String[] args) {
+      if (args.length < 2) {
+        throw new IllegalArgumentException(
+            "You need to provide a directory or a glob of images and the number of top K"
+                + " predictions to report.");
+      }
+
+      final Options options = new Options();
+      options.pattern = args[0];
+      options.k = Integer.parseInt(args[1]);
+
+      for (int i = 2; i < args.length; i += 2) {
+        if (i + 1 >= args.length) {
+          throw new IllegalArgumentException("The option " + args[i] + " needs a value");
+        }
+
+        final String value = args[i + 1];
+        switch (args[i]) {
+          case "--format":
+            options.format = value.toLowerCase(Locale.ROOT);
+            break;
+          case "--output":
+            options.output = Paths.get(value);
+            break;
+          case "--batch":
+            options.batchSize = Integer.parseInt(value);
+            break;
+          case "--threads":
+            options.threads = Integer.parseInt(value);
+            break;
+          default:
+            throw new IllegalArgumentException("Unknown option " + args[i]);
+        }
+      }
+
+      return options;
+    }
+
+    String getPattern() {
+      return pattern;
+    }
+
+    int getK() {
+      return k;
+    }
+
+    String getFormat() {
+      return format;
+    }
+
+    Path getOutput() {
+      return output;
+    }
+
+    int getBatchSize() {
+      return batchSize;
+    }
+
+    int getThreads() {
+      return threads;
+    }
+  }
+
+  /** Flushes instead of closing, so that a report written to the standard output leaves it open. */
+  private static final class UnclosedWriter extends FilterWriter {
+    private UnclosedWriter(final Writer writer) {
+      super(writer);
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+
+  /** An image read by a decoder thread, or the reason it could not be read. */
+  private static final class Decoded {
+    private final Path file;
+    private final DoodleInput input;
+    private final String error;
+    private final long nanos;
+
+    private Decoded(
+        final Path file, final DoodleInput input, final String error, final long nanos) {
+      this.file = file;
+      this.input = input;
+      this.error = error;
+      this.nanos = nanos;
+    }
+  }
+
+  /** The throughput of a scoring run. */
+  public static final class Summary {
+    private int scored;
+    private int failed;
+    private int batches;
+    private long decodeNanos;
+    private long inferenceNanos;
+    private long wallNanos;
+
+    public int getScored() {
+      return scored;
+    }
+
+    public int getFailed() {
+      return failed;
+    }
+
+    /**
+     * Returns the number of images scored per second of wall clock time.
+     *
+     * @return the throughput in images per second
+     */
+    public double getImagesPerSecond() {
+      return wallNanos == 0 ? 0 : scored / (wallNanos / 1e9);
+    }
+
+    @Override
+    public String toString() {
+      return String.format(
+          "Scored %d images (%d failed) in %.1f s: %.1f images/s, %d batches, decode %.2f ms per"
+              + " image (over all threads), inference %.2f ms per image",
+          scored,
+          failed,
+          wallNanos / 1e9,
+          getImagesPerSecond(),
+          batches,
+          scored + failed == 0 ? 0 : decodeNanos / 1e6 / (scored + failed),
+          scored == 0 ? 0 : inferenceNanos / 1e6 / scored);
+    }
+  }
+
+  /** Where the predictions of every image are written. */
+  public interface Report extends Closeable {
+
+    /**
+     * Writes the top predictions of an image.
+     *
+     * @param file The image
+     * @param predictions The top K predictions of the image, most likely first
+     * @throws IOException If the report cannot be written
+     */
+    void write(Path file, List<Classification> predictions) throws IOException;
+
+    /**
+     * Writes that an image could not be scored.
+     *
+     * @param file The image
+     * @param error The reason the image could not be scored
+     * @throws IOException If the report cannot be written
+     */
+    void writeError(Path file, String error) throws IOException;
+
+    /**
+     * Writes what is buffered to the underlying stream.
+     *
+     * @throws IOException If the report cannot be written
+     */
+    void flush() throws IOException;
+  }
+
+  /** One row per image: the file, the error if any, then each category and its probability. */
+  private static final class CsvReport implements Report {
+    private final CSVWriter writer;
+    private final int k;
+
+    private CsvReport(final Writer writer, final int k) {
+      this.writer = new CSVWriter(writer);
+      this.k = k;
+
+      final String[] header = new String[2 + 2 * k];
+      header[0] = "file";
+      header[1] = "error";
+      for (int i = 0; i < k; i++) {
+        header[2 + 2 * i] = "category" + (i + 1);
+        header[3 + 2 * i] = "probability" + (i + 1);
+      }
+      this.writer.writeNext(header, false);
+    }
+
+    @Override
+    public void write(final Path file, final List<Classification> predictions) {
+      final String[] row = new String[2 + 2 * k];
+      row[0] = file.toString();
+      row[1] = "";
+      for (int i = 0; i < predictions.size(); i++) {
+        row[2 + 2 * i] = predictions.get(i).getClassName();
+        row[3 + 2 * i] = String.format(Locale.ROOT, "%.6f", predictions.get(i).getProbability());
+      }
+      writer.writeNext(row, false);
+    }
+
+    @Override
+    public void writeError(final Path file, final String error) {
+      final String[] row = new String[2 + 2 * k];
+      row[0] = file.toString();
+      row[1] = error;
+      writer.writeNext(row, false);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+  }
+
+  /** One JSON object per line and per image, with its predictions or its error. */
+  private static final class JsonLinesReport implements Report {
+    private final Writer writer;
+
+    private JsonLinesReport(final Writer writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public void write(final Path file, final List<Classification> predictions) throws IOException {
+      final JSONArray top = new JSONArray();
+      for (final Classification prediction : predictions) {
+        top.put(
+            new JSONObject()
+                .put("category", prediction.getClassName())
+                .put("probability", prediction.getProbability()));
+      }
+
+      writeLine(new JSONObject().put("file", file.toString()).put("predictions", top));
+    }
+
+    @Override
+    public void writeError(final Path file, final String error) throws IOException {
+      writeLine(new JSONObject().put("file", file.toString()).put("error", error));
+    }
+
+    private void writeLine(final JSONObject line) throws IOException {
+      writer.write(line.toString());
+      writer.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+      writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      writer.close();
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package nz.ac.auckland.se206.ml;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The categories of the model, indexed by the position of their score in the output of the model.
+ * The names are formatted like the game words once, when the model is loaded, so that looking up a
+ * word during a game is a single map lookup without any string work.
+ */
+public final class ClassTable {
+
+  private final String[] names;
+  private final String[] displayNames;
+  private final Map<String, Integer> idsByDisplayName;
+
+  /**
+   * Constructs the table from the synset of the model.
+   *
+   * @param synset The category names of the model, in the order of its output
+   */
+  ClassTable(final List<String> synset) {
+    final int size = synset.size();
+    names = synset.toArray(new String[size]);
+    displayNames = new String[size];
+
+    final Map<String, Integer> ids = new HashMap<>(size * 2);
+    for (int i = 0; i < size; i++) {
+      // format the category name from ML the same way as the game words
+      displayNames[i] = names[i].replace("_", " ");
+      ids.putIfAbsent(displayNames[i], i);
+    }
+    idsByDisplayName = Collections.unmodifiableMap(ids);
+  }
+
+  /**
+   * Finds the id of a category.
+   *
+   * @param category The category name, with spaces instead of underscores
+   * @return the id of the category, or -1 if the model does not know the category
+   */
+  public int getId(final String category) {
+    final Integer id = idsByDisplayName.get(category);
+
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the name of a category as the model knows it.
+   *
+   * @param id The id of the category
+   * @return the category name, with underscores
+   */
+  public String getName(final int id) {
+    return names[id];
+  }
+
+  /**
+   * Returns the name of a category as the game shows it.
+   *
+   * @param id The id of the category
+   * @return the category name, with spaces instead of underscores
+   */
+  public String getDisplayName(final int id) {
+    return displayNames[id];
+  }
+
+  public int size() {
+    return names.length;
+  }
+}
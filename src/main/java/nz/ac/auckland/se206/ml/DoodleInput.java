@@ -0,0 +1,92 @@
+package nz.ac.auckland.se206.ml;
+
+import java.awt.image.BufferedImage;
+import nz.ac.auckland.se206.util.ImageUtils;
+
+/**
+ * A drawing at the resolution of the model, stored as grayscale values between 0 and 1 row by row.
+ * This is exactly what the model reads, so the translator can copy it into the input tensor in one
+ * pass without any intermediate image or array.
+ */
+public final class DoodleInput {
+
+  /**
+   * Creates the model input of an image that is already at the resolution of the model.
+   *
+   * @param image The resized image
+   * @return the model input of the image
+   */
+  public static DoodleInput fromImage(final BufferedImage image) {
+    final DoodleInput input = new DoodleInput(image.getWidth(), image.getHeight());
+    final float[] pixels = input.getPixels();
+
+    if (image.getType() == BufferedImage.TYPE_BYTE_GRAY) {
+      // gray images are read straight from the raster, like DJL does
+      final int[] samples =
+          image.getRaster().getSamples(0, 0, input.width, input.height, 0, (int[]) null);
+      for (int i = 0; i < samples.length; i++) {
+        pixels[i] = samples[i] / 255f;
+      }
+    } else {
+      input.setArgb(image.getRGB(0, 0, input.width, input.height, null, 0, input.width));
+    }
+
+    return input;
+  }
+
+  private final int width;
+  private final int height;
+  private final float[] pixels;
+
+  /**
+   * Creates a black input of the given size.
+   *
+   * @param width The width of the input
+   * @param height The height of the input
+   */
+  public DoodleInput(final int width, final int height) {
+    this(new float[width * height], width, height);
+  }
+
+  /**
+   * Wraps a grayscale buffer without copying it.
+   *
+   * @param pixels The grayscale values between 0 and 1, row by row
+   * @param width The width of the input
+   * @param height The height of the input
+   */
+  public DoodleInput(final float[] pixels, final int width, final int height) {
+    if (pixels.length < width * height) {
+      throw new IllegalArgumentException("The buffer is smaller than " + width + "x" + height);
+    }
+
+    this.pixels = pixels;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Fills the input from a raw ARGB raster of the same size, converting it to grayscale in one
+   * pass.
+   *
+   * @param argb The ARGB pixels, row by row
+   */
+  public void setArgb(final int[] argb) {
+    final int size = width * height;
+    for (int i = 0; i < size; i++) {
+      pixels[i] = ImageUtils.toGray(argb[i]);
+    }
+  }
+
+  public float[] getPixels() {
+    return pixels;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+}
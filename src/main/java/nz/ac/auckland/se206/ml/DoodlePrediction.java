@@ -2,10 +2,6 @@ package nz.ac.auckland.se206.ml;
 
 import ai.djl.ModelException;
 import ai.djl.modality.Classifications;
-import ai.djl.modality.cv.BufferedImageFactory;
-import ai.djl.modality.cv.Image;
-import ai.djl.modality.cv.transform.ToTensor;
-import ai.djl.modality.cv.translator.ImageClassificationTranslator;
 import ai.djl.repository.zoo.Criteria;
 import ai.djl.repository.zoo.ModelZoo;
 import ai.djl.repository.zoo.ZooModel;
@@ -14,10 +10,11 @@ import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import javax.imageio.ImageIO;
-import org.imgscalr.Scalr;
+import nz.ac.auckland.se206.util.AreaDownsampler;
 
 /**
  * This class is responsible for querying the DL model to get the predictions. Code partially
@@ -27,13 +24,21 @@ public class DoodlePrediction {
   /**
    * Prints the top K predictions of a given image under test.
    *
-   * @param args BMP file to predict and the number of top K predictions to print.
+   * @param args BMP file to predict and the number of top K predictions to print. A directory or a
+   *     glob of images is scored by {@link BatchScorer} instead, with the same arguments.
    * @throws ModelException If there is an error in reading the input/output of the DL model.
    * @throws IOException If the model or image cannot be found on the file system.
    * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   * @throws InterruptedException If the batch scoring is interrupted.
    */
   public static void main(final String[] args)
-      throws ModelException, IOException, TranslateException {
+      throws ModelException, IOException, TranslateException, InterruptedException {
+    if (args.length >= 2 && (args.length > 2 || !new File(args[0]).isFile())) {
+      // a directory or a glob of images is scored in bulk
+      BatchScorer.main(args);
+      return;
+    }
+
     if (args.length != 2) {
       throw new IllegalArgumentException(
           "You are not providing the correct arguments. You need to provide the path of the file"
@@ -93,32 +98,117 @@ public class DoodlePrediction {
     return strList;
   }
 
-  private final ZooModel<Image, Classifications> model;
+  // a couple of predictors is enough for the canvas, which never predicts more than a few
+  // images at the same time
+  static final int DEFAULT_POOL_SIZE = 2;
+
+  /** The number of images run through the model at once by the batch predictions. */
+  public static final int DEFAULT_BATCH_SIZE = 32;
+
+  /** The width of the images the model was trained on. */
+  public static final int INPUT_WIDTH = 65;
+
+  // the downsamplers reuse their buffers, so every thread predicting gets its own one
+  private static final ThreadLocal<AreaDownsampler> downsamplers =
+      ThreadLocal.withInitial(() -> new AreaDownsampler(INPUT_WIDTH));
+
+  private final InferenceBackend backend;
+  private final int threads;
+  private final ZooModel<DoodleInput, PredictionFrame> model;
+  private final PredictorPool<DoodleInput, PredictionFrame> predictors;
+  private final PredictorPool<DoodleInput, PredictionFrame> batchPredictors;
 
   /**
-   * Constructs the doodle prediction model by loading it from a file.
+   * Constructs the doodle prediction model by loading it from the classpath, on the backend
+   * configured for this run of the game.
    *
    * @throws ModelException If there is an error in reading the input/output of the DL model.
    * @throws IOException If the model cannot be found on the file system.
    */
   public DoodlePrediction() throws ModelException, IOException {
-    final ImageClassificationTranslator translator =
-        ImageClassificationTranslator.builder()
-            .addTransform(new ToTensor())
-            .optFlag(Image.Flag.GRAYSCALE)
-            .optApplySoftmax(true)
-            .build();
+    this(InferenceBackend.getConfigured(), DEFAULT_POOL_SIZE);
+  }
+
+  /**
+   * Constructs the doodle prediction model by loading it from the classpath, on the given backend.
+   *
+   * @param backend The runtime to run the model on.
+   * @throws ModelException If there is an error in reading the input/output of the DL model.
+   * @throws IOException If the model cannot be found on the file system.
+   */
+  public DoodlePrediction(final InferenceBackend backend) throws ModelException, IOException {
+    this(backend, DEFAULT_POOL_SIZE);
+  }
+
+  /**
+   * Constructs the doodle prediction model by loading it from the classpath, reusing at most the
+   * given number of predictors across calls. The model archive is extracted once into the local
+   * {@link ModelCache}, so this also works when the game runs from a JAR.
+   *
+   * @param backend The runtime to run the model on.
+   * @param poolSize The maximum number of predictors alive at the same time.
+   * @throws ModelException If there is an error in reading the input/output of the DL model.
+   * @throws IOException If the model cannot be found on the classpath or extracted.
+   */
+  public DoodlePrediction(final InferenceBackend backend, final int poolSize)
+      throws ModelException, IOException {
+    this(backend, poolSize, 0);
+  }
 
-    final Criteria<Image, Classifications> criteria =
+  /**
+   * Constructs the doodle prediction model by loading it from the classpath, running it with the
+   * given number of threads, e.g. as calibrated by the {@link InferenceThreadCalibrator}.
+   *
+   * @param backend The runtime to run the model on.
+   * @param poolSize The maximum number of predictors alive at the same time.
+   * @param threads The number of threads running the model, or 0 for the engine default.
+   * @throws ModelException If there is an error in reading the input/output of the DL model.
+   * @throws IOException If the model cannot be found on the classpath or extracted.
+   */
+  public DoodlePrediction(final InferenceBackend backend, final int poolSize, final int threads)
+      throws ModelException, IOException {
+    this.backend = backend;
+    this.threads = threads;
+    backend.configureEngine(threads);
+    final Path modelDir = ModelCache.getModelDirectory(backend.getModelResource());
+
+    final Criteria<DoodleInput, PredictionFrame> criteria =
         Criteria.builder()
-            .setTypes(Image.class, Classifications.class)
-            // This will not work if the application runs from a JAR.
-            .optModelUrls("src/main/resources/ml/doodle_mobilenet.zip")
-            .optOption("mapLocation", "true")
-            .optTranslator(translator)
+            .setTypes(DoodleInput.class, PredictionFrame.class)
+            .optEngine(backend.getEngineName())
+            .optModelPath(modelDir)
+            .optModelName(ModelCache.getModelName(modelDir, backend.getModelExtension()))
+            .optOptions(backend.getOptions(threads))
+            // the default translator is stateless, each pooled predictor gets its own one
+            .optTranslator(new DoodleTranslator(true, backend.supportsTensorOps()))
             .build();
 
     model = ModelZoo.loadModel(criteria);
+    backend.applyThreads(threads);
+    // every single image predictor reuses its input buffers, so it needs its own translator
+    predictors =
+        new PredictorPool<>(
+            () -> model.newPredictor(new DoodleTranslator(false, backend.supportsTensorOps())),
+            poolSize);
+    batchPredictors = new PredictorPool<>(model::newPredictor, 1);
+  }
+
+  /**
+   * Returns the runtime this model runs on.
+   *
+   * @return the inference backend of the model
+   */
+  public InferenceBackend getBackend() {
+    return backend;
+  }
+
+  /**
+   * Returns the number of threads running this model.
+   *
+   * @return the number of threads, or 0 if the engine chose it
+   */
+  public int getThreads() {
+    return threads;
   }
 
   /**
@@ -131,18 +221,89 @@ public class DoodlePrediction {
    * @return List of classification results and their confidence level.
    * @throws TranslateException If there is an error in reading the input/output of the DL model.
    */
-  public List<Classifications.Classification> getPredictions(BufferedImage bufImg, final int k)
+  public List<Classifications.Classification> getPredictions(
+      final BufferedImage bufImg, final int k) throws TranslateException {
+    return classify(bufImg).getTopK(k);
+  }
+
+  /**
+   * Runs the model once on the input image and keeps the probabilities of every category, so that
+   * everything shown during a prediction tick can be derived from a single inference.
+   *
+   * @param bufImg BufferedImage file to classify.
+   * @return The probabilities of every category.
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  public PredictionFrame getPredictionFrame(final BufferedImage bufImg) throws TranslateException {
+    return classify(bufImg);
+  }
+
+  /**
+   * Resizes the image to the input size of the model and classifies it.
+   *
+   * @param bufImg BufferedImage file to classify.
+   * @return The probabilities of every category.
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  private PredictionFrame classify(final BufferedImage bufImg) throws TranslateException {
+    // the pixels are copied into the input tensor before the downsampler of this thread runs again
+    return predictors.predict(toModelInput(bufImg, false));
+  }
+
+  /**
+   * Runs the model once on a drawing that is already at the resolution of the model. This skips the
+   * image conversions entirely: the grayscale values are copied straight into the input tensor.
+   *
+   * @param input The grayscale drawing to classify.
+   * @return The probabilities of every category.
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  public PredictionFrame getPredictionFrame(final DoodleInput input) throws TranslateException {
+    return predictors.predict(input);
+  }
+
+  /**
+   * Runs the model once on a raw ARGB raster that is already at the resolution of the model.
+   *
+   * @param argb The ARGB pixels, row by row.
+   * @param width The width of the raster.
+   * @param height The height of the raster.
+   * @return The probabilities of every category.
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  public PredictionFrame getPredictionFrame(final int[] argb, final int width, final int height)
       throws TranslateException {
+    final DoodleInput input = new DoodleInput(width, height);
+    input.setArgb(argb);
 
-    // The model requires the image to be 65x65 pixels.
-    bufImg =
-        Scalr.resize(
-            bufImg, Scalr.Method.SPEED, Scalr.Mode.FIT_TO_WIDTH, 65, 65, Scalr.OP_ANTIALIAS);
+    return getPredictionFrame(input);
+  }
 
-    final Classifications classifications =
-        model.newPredictor().predict(new BufferedImageFactory().fromImage(bufImg));
+  /**
+   * Resizes the image to the input size of the model, so that the preprocessing and the inference
+   * of a drawing can be timed on their own.
+   *
+   * @param bufImg BufferedImage file to resize.
+   * @return The input the model can classify, overwritten by the next resize on this thread.
+   */
+  public static DoodleInput toModelInput(final BufferedImage bufImg) {
+    return toModelInput(bufImg, false);
+  }
+
+  /**
+   * Resizes the image to the input size of the model and converts it to grayscale, averaging the
+   * area each pixel of the model covers in a single pass over the image.
+   *
+   * @param bufImg BufferedImage file to resize.
+   * @param copy true if the input must outlive the next resize on this thread, e.g. in a batch.
+   * @return The input the model can classify.
+   */
+  static DoodleInput toModelInput(final BufferedImage bufImg, final boolean copy) {
+    final AreaDownsampler downsampler = downsamplers.get();
+    final float[] pixels = downsampler.downsample(bufImg);
 
-    return classifications.topK(k);
+    return new DoodleInput(
+        copy ? pixels.clone() : pixels, INPUT_WIDTH, downsampler.getTargetHeight());
   }
 
   /**
@@ -151,16 +312,147 @@ public class DoodlePrediction {
    * @param image BMP image file to classify.
    * @param k The number of classes to return.
    * @return List of classification results and their confidence level.
-   * @throws IOException If the image is not found on the filesystem.
+   * @throws IOException If the image is not found on the filesystem or cannot be decoded.
    * @throws TranslateException If there is an error in reading the input/output of the DL model.
    */
   public List<Classifications.Classification> getPredictions(final File image, final int k)
       throws IOException, TranslateException {
+    return getPredictions(readImage(image), k);
+  }
+
+  /**
+   * Reads an image file.
+   *
+   * @param image The image file to read.
+   * @return The decoded image.
+   * @throws IOException If the image is not found on the filesystem or cannot be decoded.
+   */
+  private static BufferedImage readImage(final File image) throws IOException {
     if (!image.exists()) {
       throw new FileNotFoundException("The file " + image.getAbsolutePath() + " does not exist");
     }
 
-    return getPredictions(ImageIO.read(image), k);
+    final BufferedImage bufImg = ImageIO.read(image);
+    if (bufImg == null) {
+      throw new IOException("The file " + image.getAbsolutePath() + " is not a supported image");
+    }
+
+    return bufImg;
+  }
+
+  /**
+   * Predicts the categories of many images, returning the top K predictions of each image. The
+   * images are run through the model in batches, which makes much better use of the CPU than
+   * predicting them one at a time.
+   *
+   * @param images BufferedImage files to classify.
+   * @param k The number of classes to return for each image.
+   * @param batchSize The maximum number of images run through the model at once.
+   * @return The top K classification results of each image, in the same order as the images.
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  public List<List<Classifications.Classification>> getBatchPredictions(
+      final List<BufferedImage> images, final int k, final int batchSize)
+      throws TranslateException {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("The batch size must be at least 1");
+    }
+
+    final List<List<Classifications.Classification>> results = new ArrayList<>(images.size());
+    final List<DoodleInput> batch = new ArrayList<>(batchSize);
+
+    for (final BufferedImage bufImg : images) {
+      final DoodleInput image = toModelInput(bufImg, true);
+
+      // images in a batch are stacked together, so they must all have the same size
+      if (batch.size() == batchSize || (!batch.isEmpty() && !isSameSize(batch.get(0), image))) {
+        predictBatch(batch, k, results);
+      }
+      batch.add(image);
+    }
+    predictBatch(batch, k, results);
+
+    return results;
+  }
+
+  /**
+   * Predicts the categories of many image files, returning the top K predictions of each image. The
+   * files are read one batch at a time so that large archives of drawings do not have to fit in
+   * memory at once.
+   *
+   * @param images BMP image files to classify.
+   * @param k The number of classes to return for each image.
+   * @param batchSize The maximum number of images run through the model at once.
+   * @return The top K classification results of each image, in the same order as the files.
+   * @throws IOException If an image is not found on the filesystem or cannot be decoded.
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  public List<List<Classifications.Classification>> getBatchPredictionsFromFiles(
+      final List<File> images, final int k, final int batchSize)
+      throws IOException, TranslateException {
+    if (batchSize < 1) {
+      throw new IllegalArgumentException("The batch size must be at least 1");
+    }
+
+    final List<List<Classifications.Classification>> results = new ArrayList<>(images.size());
+
+    for (int from = 0; from < images.size(); from += batchSize) {
+      final List<BufferedImage> batch = new ArrayList<>(batchSize);
+
+      for (final File image : images.subList(from, Math.min(from + batchSize, images.size()))) {
+        batch.add(readImage(image));
+      }
+
+      results.addAll(getBatchPredictions(batch, k, batchSize));
+    }
+
+    return results;
+  }
+
+  /**
+   * Runs the pending batch through the model and clears it.
+   *
+   * @param batch The model inputs of the batch, all of the same size.
+   * @param k The number of classes to keep for each image.
+   * @param results The list the top K predictions of each image are added to.
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  private void predictBatch(
+      final List<DoodleInput> batch,
+      final int k,
+      final List<List<Classifications.Classification>> results)
+      throws TranslateException {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    for (final PredictionFrame frame : getBatchPredictionFrames(batch)) {
+      results.add(frame.getTopK(k));
+    }
+    batch.clear();
+  }
+
+  /**
+   * Runs the model once on a batch of drawings, keeping the probabilities of every category of each
+   * drawing.
+   *
+   * @param inputs The drawings to classify, which must all have the same size.
+   * @return The probabilities of every category of each drawing, in the same order.
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  public List<PredictionFrame> getBatchPredictionFrames(final List<DoodleInput> inputs)
+      throws TranslateException {
+    for (final DoodleInput input : inputs) {
+      if (!isSameSize(inputs.get(0), input)) {
+        throw new IllegalArgumentException("The drawings of a batch must all have the same size");
+      }
+    }
+
+    return batchPredictors.batchPredict(inputs);
+  }
+
+  private static boolean isSameSize(final DoodleInput first, final DoodleInput second) {
+    return first.getWidth() == second.getWidth() && first.getHeight() == second.getHeight();
   }
 
   /**
@@ -176,10 +468,41 @@ public class DoodlePrediction {
   }
 
   /**
-   * This method closes the ML prediction model instance. Used after each game/before the canvas
-   * instance is replaced.
+   * Returns the number of predictors currently holding native resources.
+   *
+   * @return the number of live predictors
+   */
+  public int getLivePredictorCount() {
+    return predictors.getLivePredictors() + batchPredictors.getLivePredictors();
+  }
+
+  /**
+   * Returns the number of predictors currently running a prediction.
+   *
+   * @return the number of predictors in use
+   */
+  public int getBusyPredictorCount() {
+    return predictors.getBusyPredictors() + batchPredictors.getBusyPredictors();
+  }
+
+  /**
+   * Returns the number of predictors created since the model was loaded. This stays at the pool
+   * size during a round when the predictors are reused properly.
+   *
+   * @return the total number of predictors created
+   */
+  public long getCreatedPredictorCount() {
+    return predictors.getCreatedPredictors() + batchPredictors.getCreatedPredictors();
+  }
+
+  /**
+   * This method closes the ML prediction model instance. The shared model of the game is closed by
+   * the {@link ModelManager} when the application shuts down. The pooled predictors are closed
+   * first so that their native resources are released together with the model.
    */
   public void closeManager() {
-    model.getNDManager().close();
+    predictors.close();
+    batchPredictors.close();
+    model.close();
   }
 }
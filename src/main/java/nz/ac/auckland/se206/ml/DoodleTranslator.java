@@ -0,0 +1,197 @@
+package nz.ac.auckland.se206.ml;
+
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
+import ai.djl.translate.TranslatorContext;
+import ai.djl.util.Utils;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+/**
+ * Translates a {@link DoodleInput} into the input tensor of the model and the output of the model
+ * into a {@link PredictionFrame}. It replaces the image translator of DJL, which converted the
+ * drawing into an intermediate image, then into a byte array and then into a float tensor.
+ *
+ * <p>A translator that does not batch keeps its input buffer, and its input tensor when the engine
+ * allows overwriting it, between predictions and only copies the new pixels into it, so it must
+ * only be used by a single predictor. A batching translator creates one tensor per image and stacks
+ * them, with the engine or in Java for engines that can only run models.
+ */
+public class DoodleTranslator implements Translator<DoodleInput, PredictionFrame> {
+
+  private final boolean batching;
+  private final boolean tensorOps;
+  private ClassTable classes;
+
+  // reused between predictions when not batching
+  private NDArray input;
+  private ByteBuffer buffer;
+
+  /**
+   * Constructs the translator.
+   *
+   * @param batching true if the predictor runs batches of images through the model
+   */
+  public DoodleTranslator(final boolean batching) {
+    this(batching, true);
+  }
+
+  /**
+   * Constructs the translator for an engine that may only be able to run models.
+   *
+   * @param batching true if the predictor runs batches of images through the model
+   * @param tensorOps true if the engine can overwrite, stack and split tensors
+   */
+  public DoodleTranslator(final boolean batching, final boolean tensorOps) {
+    this.batching = batching;
+    this.tensorOps = tensorOps;
+  }
+
+  @Override
+  public void prepare(final TranslatorContext ctx) throws Exception {
+    if (classes == null) {
+      // the model caches its artifacts, so all the translators of a model share one table
+      classes = ctx.getModel().getArtifact("synset.txt", in -> new ClassTable(Utils.readLines(in)));
+    }
+  }
+
+  @Override
+  public NDList processInput(final TranslatorContext ctx, final DoodleInput doodle) {
+    final int size = doodle.getWidth() * doodle.getHeight();
+
+    if (batching) {
+      // DJL adds the batch dimension when stacking the images
+      final Shape shape = new Shape(1, doodle.getHeight(), doodle.getWidth());
+      return new NDList(
+          ctx.getNDManager().create(fill(doodle, newBuffer(size)), shape, DataType.FLOAT32));
+    }
+
+    final Shape shape = new Shape(1, 1, doodle.getHeight(), doodle.getWidth());
+    if (!tensorOps) {
+      // immutable tensors are created around the reused buffer and freed after the prediction
+      if (buffer == null || buffer.capacity() < size * Float.BYTES) {
+        buffer = newBuffer(size);
+      }
+      return new NDList(ctx.getNDManager().create(fill(doodle, buffer), shape, DataType.FLOAT32));
+    }
+
+    if (input == null || !input.getShape().equals(shape)) {
+      if (input != null) {
+        input.close();
+      }
+      // the tensor belongs to the predictor, so it outlives a single prediction
+      input = ctx.getPredictorManager().create(shape, DataType.FLOAT32);
+      buffer = newBuffer(size);
+    }
+
+    input.set(fill(doodle, buffer));
+    return new NDList(input);
+  }
+
+  @Override
+  public PredictionFrame processOutput(final TranslatorContext ctx, final NDList list) {
+    // the outputs of a reused input tensor would otherwise live as long as the predictor
+    list.attach(ctx.getNDManager());
+
+    return new PredictionFrame(classes, softmax(list.singletonOrThrow().toFloatArray()));
+  }
+
+  @Override
+  public Batchifier getBatchifier() {
+    // without batching the input tensor already has its batch dimension
+    if (!batching) {
+      return null;
+    }
+    return tensorOps ? Batchifier.STACK : new CopyBatchifier();
+  }
+
+  /**
+   * Copies the pixels of the drawing into a native buffer.
+   *
+   * @param doodle The drawing
+   * @param buffer A direct buffer large enough for the drawing
+   * @return the buffer, ready to be read
+   */
+  private static ByteBuffer fill(final DoodleInput doodle, final ByteBuffer buffer) {
+    buffer.clear();
+    buffer.asFloatBuffer().put(doodle.getPixels(), 0, doodle.getWidth() * doodle.getHeight());
+    buffer.limit(doodle.getWidth() * doodle.getHeight() * Float.BYTES);
+
+    return buffer;
+  }
+
+  private static ByteBuffer newBuffer(final int size) {
+    return ByteBuffer.allocateDirect(size * Float.BYTES).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Stacks and splits batches by copying the values of the tensors, for engines such as ONNX
+   * Runtime that can run a model but not stack or split its tensors. The tensors of a doodle batch
+   * are small, so the copies cost little next to the model.
+   */
+  private static class CopyBatchifier implements Batchifier {
+
+    @Override
+    public NDList batchify(final NDList[] inputs) {
+      final NDArray first = inputs[0].singletonOrThrow();
+      final int size = Math.toIntExact(first.size());
+      final ByteBuffer batch = newBuffer(size * inputs.length);
+
+      final FloatBuffer values = batch.asFloatBuffer();
+      for (final NDList input : inputs) {
+        values.put(input.singletonOrThrow().toFloatArray());
+      }
+
+      final Shape shape = new Shape(inputs.length).addAll(first.getShape());
+      return new NDList(first.getManager().create(batch, shape, DataType.FLOAT32));
+    }
+
+    @Override
+    public NDList[] unbatchify(final NDList inputs) {
+      final NDArray output = inputs.singletonOrThrow();
+      final int batchSize = Math.toIntExact(output.getShape().get(0));
+      final Shape shape = output.getShape().slice(1);
+      final int size = Math.toIntExact(shape.size());
+      final float[] values = output.toFloatArray();
+
+      final NDList[] outputs = new NDList[batchSize];
+      for (int i = 0; i < batchSize; i++) {
+        final ByteBuffer buffer = newBuffer(size);
+        buffer.asFloatBuffer().put(values, i * size, size);
+        outputs[i] = new NDList(output.getManager().create(buffer, shape, DataType.FLOAT32));
+      }
+      return outputs;
+    }
+  }
+
+  /**
+   * Turns the raw scores of the model into probabilities.
+   *
+   * @param logits The raw scores of every category, overwritten by the probabilities
+   * @return the probabilities of every category
+   */
+  private static float[] softmax(final float[] logits) {
+    float max = Float.NEGATIVE_INFINITY;
+    for (final float logit : logits) {
+      max = Math.max(max, logit);
+    }
+
+    // subtracting the max keeps the exponentials from overflowing
+    double sum = 0;
+    for (int i = 0; i < logits.length; i++) {
+      logits[i] = (float) Math.exp(logits[i] - max);
+      sum += logits[i];
+    }
+
+    for (int i = 0; i < logits.length; i++) {
+      logits[i] = (float) (logits[i] / sum);
+    }
+
+    return logits;
+  }
+}
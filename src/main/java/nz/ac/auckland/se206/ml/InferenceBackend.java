@@ -0,0 +1,164 @@
+package nz.ac.auckland.se206.ml;
+
+import ai.djl.pytorch.jni.JniUtils;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The runtimes the doodle model can run on. Each backend loads its own export of the same MobileNet
+ * from the classpath, and the rest of the game only ever sees a {@link DoodlePrediction}.
+ */
+public enum InferenceBackend {
+  /** The TorchScript export of the model, run by the PyTorch engine of DJL. */
+  PYTORCH("PyTorch", "/ml/doodle_mobilenet.zip", ".pt", Map.of("mapLocation", "true"), true),
+
+  /** The ONNX export of the model, run by the ONNX Runtime engine of DJL on the CPU. */
+  ONNX_RUNTIME("OnnxRuntime", "/ml/doodle_mobilenet_onnx.zip", ".onnx", Map.of(), false);
+
+  /** System property choosing the backend at startup, e.g. -Dquickdraw.inference.backend=onnx. */
+  public static final String BACKEND_PROPERTY = "quickdraw.inference.backend";
+
+  /**
+   * Returns the backend chosen for this run of the game, falling back to PyTorch when nothing or an
+   * unknown backend was configured.
+   *
+   * @return the configured backend
+   */
+  public static InferenceBackend getConfigured() {
+    final String name = System.getProperty(BACKEND_PROPERTY);
+    if (name == null || name.isBlank()) {
+      return PYTORCH;
+    }
+
+    try {
+      return fromName(name);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage() + ", using " + PYTORCH.getEngineName());
+      return PYTORCH;
+    }
+  }
+
+  /**
+   * Finds a backend by name, ignoring the case: pytorch, onnx or onnxruntime.
+   *
+   * @param name The name of the backend
+   * @return the backend with that name
+   * @throws IllegalArgumentException If there is no backend with that name
+   */
+  public static InferenceBackend fromName(final String name) {
+    switch (name.trim().toLowerCase(Locale.ROOT).replace("_", "")) {
+      case "pytorch":
+      case "torch":
+        return PYTORCH;
+      case "onnx":
+      case "onnxruntime":
+      case "ort":
+        return ONNX_RUNTIME;
+      default:
+        throw new IllegalArgumentException("Unknown inference backend " + name);
+    }
+  }
+
+  private final String engineName;
+  private final String modelResource;
+  private final String modelExtension;
+  private final Map<String, String> options;
+  private final boolean tensorOps;
+
+  private InferenceBackend(
+      final String engineName,
+      final String modelResource,
+      final String modelExtension,
+      final Map<String, String> options,
+      final boolean tensorOps) {
+    this.engineName = engineName;
+    this.modelResource = modelResource;
+    this.modelExtension = modelExtension;
+    this.options = options;
+    this.tensorOps = tensorOps;
+  }
+
+  /**
+   * Returns the name of the DJL engine running this backend.
+   *
+   * @return the engine name, as given to the criteria of the model
+   */
+  public String getEngineName() {
+    return engineName;
+  }
+
+  /**
+   * Returns the classpath location of the model archive of this backend.
+   *
+   * @return the model archive, extracted by the {@link ModelCache}
+   */
+  public String getModelResource() {
+    return modelResource;
+  }
+
+  /**
+   * Returns the extension of the model file inside the archive.
+   *
+   * @return the extension, including the dot
+   */
+  public String getModelExtension() {
+    return modelExtension;
+  }
+
+  /**
+   * Returns the engine specific options used when loading the model.
+   *
+   * @param threads The number of threads running the model, or 0 for the engine default
+   * @return the loading options
+   */
+  public Map<String, String> getOptions(final int threads) {
+    final Map<String, String> loadOptions = new HashMap<>(options);
+    if (this == ONNX_RUNTIME && threads > 0) {
+      // ONNX Runtime takes its threads per session, the model runs its operators one at a time
+      loadOptions.put("intraOpNumThreads", String.valueOf(threads));
+      loadOptions.put("interOpNumThreads", "1");
+    }
+
+    return loadOptions;
+  }
+
+  /**
+   * Checks if the engine can overwrite, stack and split tensors. ONNX Runtime can only run models,
+   * so the translator does these in Java instead of loading a second engine for them.
+   *
+   * @return true if the engine supports the tensor operations of the translator
+   */
+  public boolean supportsTensorOps() {
+    return tensorOps;
+  }
+
+  /**
+   * Configures the engine of this backend before its first model is loaded.
+   *
+   * @param threads The number of threads running the model, or 0 for the engine default
+   */
+  void configureEngine(final int threads) {
+    if (this == ONNX_RUNTIME) {
+      // otherwise DJL loads PyTorch next to ONNX Runtime for the tensor operations, which the
+      // translator does not need and which would cost the memory this backend saves
+      System.setProperty("ai.djl.onnx.disable_alternative", "true");
+    } else if (threads > 0) {
+      // only read when the engine starts, the inter-op threads cannot change afterwards
+      System.setProperty("ai.djl.pytorch.num_interop_threads", "1");
+      System.setProperty("ai.djl.pytorch.num_threads", String.valueOf(threads));
+    }
+  }
+
+  /**
+   * Sets the number of threads of an engine that shares them between all its models, once the
+   * engine is running.
+   *
+   * @param threads The number of threads running the model, or 0 for the engine default
+   */
+  void applyThreads(final int threads) {
+    if (this == PYTORCH && threads > 0) {
+      JniUtils.setNumThreads(threads);
+    }
+  }
+}
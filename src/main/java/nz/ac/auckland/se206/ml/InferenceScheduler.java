@@ -0,0 +1,109 @@
+package nz.ac.auckland.se206.ml;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when the drawing should be classified again, from the strokes of the player rather than
+ * from a fixed clock. A prediction is due shortly after a stroke ends, so that a winning stroke is
+ * recognised right away, or when the player pauses in the middle of a stroke. Bursts of short
+ * strokes are coalesced into a single prediction by waiting for a short quiet time first, and a
+ * long stroke still gets a prediction at a maximum interval.
+ *
+ * <p>The strokes are reported on the JavaFX thread while the prediction loop asks if a prediction
+ * is due, so every method is synchronized. Times are taken with {@link System#nanoTime()}.
+ */
+public class InferenceScheduler {
+
+  public static final long DEFAULT_DEBOUNCE_MILLIS = 100;
+  public static final long DEFAULT_PAUSE_MILLIS = 300;
+  public static final long DEFAULT_MAX_INTERVAL_MILLIS = 1000;
+
+  private final long debounceNanos;
+  private final long pauseNanos;
+  private final long maxIntervalNanos;
+
+  private boolean drawing = false;
+  private long lastStrokeNanos;
+  private long lastPredictionNanos;
+
+  /**
+   * Constructs a scheduler with the default delays.
+   *
+   * @param nowNanos The current time
+   */
+  public InferenceScheduler(final long nowNanos) {
+    this(DEFAULT_DEBOUNCE_MILLIS, DEFAULT_PAUSE_MILLIS, DEFAULT_MAX_INTERVAL_MILLIS, nowNanos);
+  }
+
+  /**
+   * Constructs a scheduler.
+   *
+   * @param debounceMillis The quiet time after the end of a stroke before predicting
+   * @param pauseMillis The time the pointer must rest during a stroke before predicting
+   * @param maxIntervalMillis The longest time between two predictions while the drawing changes
+   * @param nowNanos The current time
+   */
+  public InferenceScheduler(
+      final long debounceMillis,
+      final long pauseMillis,
+      final long maxIntervalMillis,
+      final long nowNanos) {
+    if (debounceMillis < 0 || pauseMillis < debounceMillis || maxIntervalMillis < pauseMillis) {
+      throw new IllegalArgumentException(
+          "The delays must be ordered: 0 <= debounce <= pause <= maximum interval");
+    }
+
+    this.debounceNanos = TimeUnit.MILLISECONDS.toNanos(debounceMillis);
+    this.pauseNanos = TimeUnit.MILLISECONDS.toNanos(pauseMillis);
+    this.maxIntervalNanos = TimeUnit.MILLISECONDS.toNanos(maxIntervalMillis);
+    this.lastStrokeNanos = nowNanos;
+    this.lastPredictionNanos = nowNanos;
+  }
+
+  /**
+   * Reports that the current stroke was extended.
+   *
+   * @param nowNanos The current time
+   */
+  public synchronized void onStroke(final long nowNanos) {
+    drawing = true;
+    lastStrokeNanos = nowNanos;
+  }
+
+  /**
+   * Reports that the current stroke ended, or that the drawing changed at once, e.g. when it is
+   * cleared.
+   *
+   * @param nowNanos The current time
+   */
+  public synchronized void onStrokeEnd(final long nowNanos) {
+    drawing = false;
+    lastStrokeNanos = nowNanos;
+  }
+
+  /**
+   * Checks if the changed drawing should be classified now. The caller checks that the drawing
+   * changed since the last prediction, nothing is ever due on an unchanged drawing.
+   *
+   * @param nowNanos The current time
+   * @return true if a prediction is due
+   */
+  public synchronized boolean isDue(final long nowNanos) {
+    final long quiet = nowNanos - lastStrokeNanos;
+    if (quiet >= (drawing ? pauseNanos : debounceNanos)) {
+      return true;
+    }
+
+    // the player keeps drawing, do not leave the predictions behind for too long
+    return nowNanos - lastPredictionNanos >= maxIntervalNanos;
+  }
+
+  /**
+   * Reports that the drawing was just classified.
+   *
+   * @param nowNanos The current time
+   */
+  public synchronized void onPredicted(final long nowNanos) {
+    lastPredictionNanos = nowNanos;
+  }
+}
@@ -0,0 +1,235 @@
+package nz.ac.auckland.se206.ml;
+
+import ai.djl.ModelException;
+import ai.djl.translate.TranslateException;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * This class chooses how many threads the inference engine runs the doodle model with. On the first
+ * launch it loads the model with a few thread counts, times each of them and saves the fastest one
+ * to a local config file, so that later launches load the model straight with it. The config is
+ * measured again when the number of cores of the machine changes.
+ */
+public class InferenceThreadCalibrator {
+
+  /** System property forcing the number of inference threads, skipping the calibration. */
+  public static final String THREADS_PROPERTY = "quickdraw.inference.threads";
+
+  private static final String CONFIG_FILE = "inference-threads.properties";
+
+  private static final int WARM_UP_PREDICTIONS = 5;
+  private static final int TIMED_PREDICTIONS = 20;
+
+  // fewer threads are kept when they are nearly as fast, leaving the cores to the rest of the game
+  private static final double TOLERANCE = 1.1;
+
+  // size of the drawable canvas, the calibration images go through the same resizing as a drawing
+  private static final int CANVAS_WIDTH = 937;
+  private static final int CANVAS_HEIGHT = 688;
+
+  /**
+   * Loads the doodle model with the configured number of threads, calibrating it first if this
+   * machine has not been calibrated yet.
+   *
+   * @param backend The runtime to run the model on
+   * @return the loaded model
+   * @throws ModelException If there is an error in reading the input/output of the DL model.
+   * @throws IOException If the model cannot be found on the file system.
+   */
+  public static DoodlePrediction loadModel(final InferenceBackend backend)
+      throws ModelException, IOException {
+    final int threads = getConfiguredThreads(backend);
+    if (threads > 0) {
+      return new DoodlePrediction(backend, DoodlePrediction.DEFAULT_POOL_SIZE, threads);
+    }
+
+    return calibrate(backend);
+  }
+
+  /**
+   * Returns the number of threads configured for a backend, either by the system property or by a
+   * previous calibration on this machine.
+   *
+   * @param backend The runtime to run the model on
+   * @return the number of threads, or 0 if the backend still has to be calibrated
+   */
+  public static int getConfiguredThreads(final InferenceBackend backend) {
+    final String override = System.getProperty(THREADS_PROPERTY);
+    if (override != null && !override.isBlank()) {
+      try {
+        return Math.max(1, Integer.parseInt(override.trim()));
+      } catch (NumberFormatException e) {
+        System.err.println("Invalid " + THREADS_PROPERTY + " " + override + ", calibrating");
+      }
+    }
+
+    final Properties config = readConfig();
+    final String cores = config.getProperty(getKey(backend, "cores"));
+    final String threads = config.getProperty(getKey(backend, "threads"));
+    if (threads == null || !String.valueOf(getAvailableCores()).equals(cores)) {
+      return 0;
+    }
+
+    try {
+      return Math.max(1, Integer.parseInt(threads.trim()));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * Times the model with every candidate number of threads and saves the fastest one. The model
+   * loaded with that number of threads is kept and returned, the others are closed.
+   *
+   * @param backend The runtime to run the model on
+   * @return the model loaded with the fastest number of threads
+   * @throws ModelException If there is an error in reading the input/output of the DL model.
+   * @throws IOException If the model cannot be found on the file system.
+   */
+  public static DoodlePrediction calibrate(final InferenceBackend backend)
+      throws ModelException, IOException {
+    // an empty canvas is black
+    final BufferedImage canvas =
+        new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+    DoodlePrediction best = null;
+    long bestLatency = Long.MAX_VALUE;
+
+    for (final int threads : getCandidates(getAvailableCores())) {
+      final DoodlePrediction model =
+          new DoodlePrediction(backend, DoodlePrediction.DEFAULT_POOL_SIZE, threads);
+
+      final long latency;
+      try {
+        latency = measure(model, canvas);
+      } catch (TranslateException e) {
+        model.closeManager();
+        if (best != null) {
+          best.closeManager();
+        }
+        throw new ModelException("Could not calibrate the doodle model", e);
+      }
+
+      // the candidates are in increasing order, so more threads must be clearly faster
+      if (best == null || latency * TOLERANCE < bestLatency) {
+        if (best != null) {
+          best.closeManager();
+        }
+        best = model;
+        bestLatency = latency;
+      } else {
+        model.closeManager();
+      }
+    }
+
+    // the thread count of some engines is global, so the last candidate may have changed it
+    backend.applyThreads(best.getThreads());
+    saveThreads(backend, best.getThreads());
+    return best;
+  }
+
+  /**
+   * Lists the numbers of threads worth trying: powers of two up to the number of cores minus one,
+   * which is left to the JavaFX and speech threads, and that maximum itself.
+   *
+   * @param cores The number of cores of the machine
+   * @return the candidates in increasing order
+   */
+  static List<Integer> getCandidates(final int cores) {
+    final int max = Math.max(1, cores - 1);
+
+    final List<Integer> candidates = new ArrayList<>();
+    for (int threads = 1; threads < max; threads *= 2) {
+      candidates.add(threads);
+    }
+    candidates.add(max);
+
+    return candidates;
+  }
+
+  /**
+   * Measures the median latency of the model once warmed up.
+   *
+   * @param model The model to time
+   * @param canvas The image to predict
+   * @return the median latency in nanoseconds
+   * @throws TranslateException If a prediction fails
+   */
+  private static long measure(final DoodlePrediction model, final BufferedImage canvas)
+      throws TranslateException {
+    for (int i = 0; i < WARM_UP_PREDICTIONS; i++) {
+      model.getPredictionFrame(canvas);
+    }
+
+    final long[] latencies = new long[TIMED_PREDICTIONS];
+    for (int i = 0; i < TIMED_PREDICTIONS; i++) {
+      final long start = System.nanoTime();
+      model.getPredictionFrame(canvas);
+      latencies[i] = System.nanoTime() - start;
+    }
+
+    // the median ignores the odd prediction slowed down by the garbage collector
+    Arrays.sort(latencies);
+    return latencies[TIMED_PREDICTIONS / 2];
+  }
+
+  private static int getAvailableCores() {
+    return Runtime.getRuntime().availableProcessors();
+  }
+
+  private static String getKey(final InferenceBackend backend, final String name) {
+    return backend.name().toLowerCase(Locale.ROOT) + "." + name;
+  }
+
+  private static Path getConfigFile() {
+    return ModelCache.getCacheRoot().resolve(CONFIG_FILE);
+  }
+
+  private static Properties readConfig() {
+    final Properties config = new Properties();
+    final Path file = getConfigFile();
+
+    if (Files.isRegularFile(file)) {
+      try (InputStream in = Files.newInputStream(file)) {
+        config.load(in);
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
+    return config;
+  }
+
+  /**
+   * Saves the number of threads of a backend, keeping the calibration of the other backends.
+   *
+   * @param backend The calibrated runtime
+   * @param threads The fastest number of threads
+   */
+  private static void saveThreads(final InferenceBackend backend, final int threads) {
+    final Properties config = readConfig();
+    config.setProperty(getKey(backend, "threads"), String.valueOf(threads));
+    config.setProperty(getKey(backend, "cores"), String.valueOf(getAvailableCores()));
+
+    final Path file = getConfigFile();
+    try {
+      Files.createDirectories(file.getParent());
+      try (OutputStream out = Files.newOutputStream(file)) {
+        config.store(
+            out, "Inference threads calibrated for this machine, delete to calibrate again");
+      }
+    } catch (IOException e) {
+      // the game works without the config, it is only calibrated again on the next launch
+      e.printStackTrace();
+    }
+  }
+}
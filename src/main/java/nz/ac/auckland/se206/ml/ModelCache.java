@@ -0,0 +1,274 @@
+package nz.ac.auckland.se206.ml;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * This class extracts the model archives bundled on the classpath into a local cache directory, so
+ * that the models can be loaded when the game runs from a JAR. Each archive is extracted into a
+ * directory named after a key of its content: later launches load straight from that directory
+ * without unzipping again, and an updated archive gets a directory of its own.
+ *
+ * <p>In a JAR the key is the size and the CRC-32 that the JAR lists for the entry, so it is found
+ * without reading the archive. Anywhere else, e.g. in the classes directory of a development build,
+ * the key is a hash of the content: a fresh build touches the archive without changing it, and must
+ * not extract it again. Once an archive is extracted, the directories of its previous keys are
+ * deleted, so the cache holds one copy of each model.
+ */
+public class ModelCache {
+
+  /** System property that overrides the root directory of the cache. */
+  public static final String CACHE_DIR_PROPERTY = "quickdraw.cache.dir";
+
+  // bumped whenever the layout of the cache changes
+  private static final String CACHE_VERSION = "v2";
+
+  /**
+   * Returns the root directory of the local cache of the game.
+   *
+   * @return the cache directory, by default ~/.quickdraw/cache
+   */
+  public static Path getCacheRoot() {
+    final String override = System.getProperty(CACHE_DIR_PROPERTY);
+    if (override != null && !override.isBlank()) {
+      return Paths.get(override);
+    }
+
+    return Paths.get(System.getProperty("user.home"), ".quickdraw", "cache");
+  }
+
+  /**
+   * Returns the directory holding the extracted content of a model archive from the classpath,
+   * extracting the archive first if it is not in the cache yet.
+   *
+   * @param resource The classpath location of the model archive, e.g. /ml/doodle_mobilenet.zip
+   * @return the directory of the extracted model
+   * @throws IOException If the archive is not on the classpath or cannot be extracted
+   */
+  public static Path getModelDirectory(final String resource) throws IOException {
+    final String archiveName = resource.substring(resource.lastIndexOf('/') + 1);
+    final String baseName = archiveName.substring(0, archiveName.lastIndexOf('.'));
+
+    final Path modelsDir = getCacheRoot().resolve("models").resolve(CACHE_VERSION);
+    final Path target = modelsDir.resolve(baseName + "-" + getArchiveKey(resource));
+
+    // the directory only appears once fully extracted, so if it exists it is complete
+    if (!Files.isDirectory(target)) {
+      extract(resource, modelsDir, baseName, target);
+    }
+
+    return unwrapSingleDirectory(target);
+  }
+
+  /**
+   * Finds the name DJL should load from a model directory, that is the name of its model file
+   * without extension.
+   *
+   * @param modelDir The directory of the extracted model
+   * @param extension The extension of the model file, e.g. .pt
+   * @return the model name
+   * @throws IOException If there is no model file in the directory
+   */
+  public static String getModelName(final Path modelDir, final String extension)
+      throws IOException {
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(modelDir, "*" + extension)) {
+      for (final Path file : files) {
+        final String fileName = file.getFileName().toString();
+        return fileName.substring(0, fileName.length() - extension.length());
+      }
+    }
+
+    throw new FileNotFoundException("No " + extension + " model file in " + modelDir);
+  }
+
+  /**
+   * Finds a key that changes with the content of a classpath resource. In a JAR it is read from
+   * what the JAR already knows about the entry, otherwise the content is hashed.
+   *
+   * @param resource The classpath location of the resource
+   * @return the key of the resource content
+   * @throws IOException If the resource is not on the classpath
+   */
+  private static String getArchiveKey(final String resource) throws IOException {
+    final URL url = ModelCache.class.getResource(resource);
+    if (url == null) {
+      throw new FileNotFoundException("The model " + resource + " is not on the classpath");
+    }
+
+    final URLConnection connection = url.openConnection();
+    if (connection instanceof JarURLConnection) {
+      // the central directory of the JAR holds the CRC of every entry, nothing is decompressed
+      final JarEntry entry = ((JarURLConnection) connection).getJarEntry();
+      if (entry != null && entry.getSize() >= 0 && entry.getCrc() >= 0) {
+        return String.format("%x-%08x", entry.getSize(), entry.getCrc());
+      }
+    }
+
+    return hashResource(resource);
+  }
+
+  /**
+   * Computes the SHA-256 of a classpath resource.
+   *
+   * @param resource The classpath location of the resource
+   * @return the hexadecimal hash of the resource content
+   * @throws IOException If the resource is not on the classpath
+   */
+  private static String hashResource(final String resource) throws IOException {
+    final MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not supported by this JVM", e);
+    }
+
+    try (InputStream in = new DigestInputStream(openResource(resource), digest)) {
+      in.transferTo(OutputStream.nullOutputStream());
+    }
+
+    return HexFormat.of().formatHex(digest.digest());
+  }
+
+  /**
+   * Extracts the archive into a temporary directory and then moves it to the target in one step, so
+   * that an interrupted extraction never leaves a partial model in the cache. The directories of
+   * the previous keys of the archive are deleted afterwards.
+   *
+   * @param resource The classpath location of the model archive
+   * @param modelsDir The directory of the cached models
+   * @param baseName The name of the archive without extension
+   * @param target The directory the model is extracted to
+   * @throws IOException If the archive cannot be extracted
+   */
+  private static void extract(
+      final String resource, final Path modelsDir, final String baseName, final Path target)
+      throws IOException {
+    Files.createDirectories(modelsDir);
+    final Path tempDir = Files.createTempDirectory(modelsDir, ".extracting-");
+
+    try {
+      try (ZipInputStream zip = new ZipInputStream(openResource(resource))) {
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+          final Path path = tempDir.resolve(entry.getName()).normalize();
+          // never write outside of the extraction directory
+          if (!path.startsWith(tempDir)) {
+            throw new IOException("Invalid entry " + entry.getName() + " in " + resource);
+          }
+
+          if (entry.isDirectory()) {
+            Files.createDirectories(path);
+          } else {
+            Files.createDirectories(path.getParent());
+            Files.copy(zip, path, StandardCopyOption.REPLACE_EXISTING);
+          }
+        }
+      }
+
+      try {
+        Files.move(tempDir, target, StandardCopyOption.ATOMIC_MOVE);
+        deleteOtherKeys(modelsDir, baseName, target);
+      } catch (FileSystemException e) {
+        // another instance of the game may have extracted the same model at the same time
+        if (!Files.isDirectory(target)) {
+          throw e;
+        }
+      }
+    } finally {
+      deleteRecursively(tempDir);
+    }
+  }
+
+  /**
+   * Deletes the directories extracted from other versions of an archive, that is the directories
+   * with the same name and another key. A directory that cannot be deleted, e.g. because another
+   * instance of the game still uses it on Windows, is left for the next extraction.
+   *
+   * @param modelsDir The directory of the cached models
+   * @param baseName The name of the archive without extension
+   * @param target The directory the archive was just extracted to
+   * @throws IOException If the cached models cannot be listed
+   */
+  private static void deleteOtherKeys(
+      final Path modelsDir, final String baseName, final Path target) throws IOException {
+    final String prefix = baseName + "-";
+
+    try (DirectoryStream<Path> dirs = Files.newDirectoryStream(modelsDir, prefix + "*")) {
+      for (final Path dir : dirs) {
+        final String key = dir.getFileName().toString().substring(prefix.length());
+        // only a hexadecimal key is an old version, not the name of another model
+        if (!dir.equals(target) && key.matches("[0-9a-f-]+") && Files.isDirectory(dir)) {
+          try {
+            deleteRecursively(dir);
+          } catch (IOException e) {
+            System.err.println("Could not delete the old model " + dir + ": " + e.getMessage());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Archives often wrap the model in a single top level folder, in which case that folder is the
+   * actual model directory.
+   *
+   * @param dir The extraction directory
+   * @return the directory containing the model files
+   * @throws IOException If the directory cannot be listed
+   */
+  private static Path unwrapSingleDirectory(final Path dir) throws IOException {
+    final List<Path> children = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+      stream.forEach(children::add);
+    }
+
+    if (children.size() == 1 && Files.isDirectory(children.get(0))) {
+      return children.get(0);
+    }
+
+    return dir;
+  }
+
+  private static InputStream openResource(final String resource) throws IOException {
+    final InputStream in = ModelCache.class.getResourceAsStream(resource);
+    if (in == null) {
+      throw new FileNotFoundException("The model " + resource + " is not on the classpath");
+    }
+
+    return in;
+  }
+
+  private static void deleteRecursively(final Path dir) throws IOException {
+    if (!Files.exists(dir)) {
+      return;
+    }
+
+    try (Stream<Path> paths = Files.walk(dir)) {
+      for (final Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+}
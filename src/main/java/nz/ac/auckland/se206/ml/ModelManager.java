@@ -0,0 +1,117 @@
+package nz.ac.auckland.se206.ml;
+
+import ai.djl.ModelException;
+import ai.djl.translate.TranslateException;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import nz.ac.auckland.se206.util.AppExecutors;
+
+/**
+ * This class owns the doodle prediction model of the application. The model is loaded only once,
+ * warmed up with a few predictions and then shared by every game. It is closed when the JVM shuts
+ * down instead of at the end of each game.
+ */
+public class ModelManager {
+
+  // size of the drawable canvas, the warm up images go through the same resizing as a drawing
+  private static final int CANVAS_WIDTH = 937;
+  private static final int CANVAS_HEIGHT = 688;
+  private static final int WARM_UP_PREDICTIONS = 3;
+
+  // loading has its own lock so that checking the readiness never waits for the load
+  private static final Object loadLock = new Object();
+
+  private static volatile DoodlePrediction model;
+  private static CompletableFuture<DoodlePrediction> loading;
+
+  /**
+   * Starts loading the shared model and the DL engine on a background thread, so that native
+   * library loading and model deserialization happen while the user is busy choosing a profile.
+   * Calling this again returns the same loading, unless the previous one failed.
+   *
+   * @return a future completed with the shared model once it is loaded and warmed up
+   */
+  public static synchronized CompletableFuture<DoodlePrediction> preload() {
+    if (loading == null || loading.isCompletedExceptionally()) {
+      final CompletableFuture<DoodlePrediction> future = new CompletableFuture<>();
+
+      // the io threads are daemons, so a slow load never keeps the application from exiting
+      try {
+        AppExecutors.io()
+            .execute(
+                () -> {
+                  try {
+                    future.complete(getModel());
+                  } catch (ModelException | IOException | RuntimeException e) {
+                    future.completeExceptionally(e);
+                  }
+                });
+      } catch (RejectedExecutionException e) {
+        // the io pool is full, the first game loads the model on the prediction thread instead
+        future.completeExceptionally(e);
+      }
+
+      loading = future;
+    }
+
+    return loading;
+  }
+
+  /**
+   * Returns the shared model, loading and warming it up on the first call.
+   *
+   * @return the doodle prediction model of the application
+   * @throws ModelException If there is an error in reading the input/output of the DL model.
+   * @throws IOException If the model cannot be found on the file system.
+   */
+  public static DoodlePrediction getModel() throws ModelException, IOException {
+    synchronized (loadLock) {
+      if (model == null) {
+        // the first launch on a machine also finds the fastest number of inference threads
+        final DoodlePrediction loaded =
+            InferenceThreadCalibrator.loadModel(InferenceBackend.getConfigured());
+        warmUp(loaded);
+
+        // the model lives as long as the application, so it is only released on exit
+        Runtime.getRuntime()
+            .addShutdownHook(new Thread(loaded::closeManager, "doodle-model-shutdown"));
+        model = loaded;
+      }
+
+      return model;
+    }
+  }
+
+  /**
+   * Checks if the shared model has already been loaded.
+   *
+   * @return true if the model is loaded and warmed up
+   */
+  public static boolean isModelLoaded() {
+    return model != null;
+  }
+
+  /**
+   * Runs a few predictions on an empty canvas so that the first prediction of the first game does
+   * not pay for the lazy initialisation of the engine and of the predictors.
+   *
+   * @param model The freshly loaded model
+   * @throws ModelException If the model fails to predict the empty canvas
+   */
+  private static void warmUp(final DoodlePrediction model) throws ModelException {
+    // an empty canvas is black
+    final BufferedImage emptyCanvas =
+        new BufferedImage(CANVAS_WIDTH, CANVAS_HEIGHT, BufferedImage.TYPE_INT_RGB);
+
+    try {
+      for (int i = 0; i < WARM_UP_PREDICTIONS; i++) {
+        model.getPredictionFrame(emptyCanvas);
+      }
+    } catch (TranslateException e) {
+      model.closeManager();
+      throw new ModelException("Could not warm up the doodle model", e);
+    }
+  }
+}
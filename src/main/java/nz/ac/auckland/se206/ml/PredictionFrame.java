@@ -0,0 +1,203 @@
+package nz.ac.auckland.se206.ml;
+
+import ai.djl.modality.Classifications.Classification;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The immutable result of running the model once on a drawing. It keeps the probability of every
+ * category indexed by category id, so that the win check, the ranking label and the top predictions
+ * shown during a tick can all be derived from a single inference. Nothing is sorted: the rank of a
+ * word is counted in one pass over the probabilities and only the few top predictions that are
+ * shown are selected.
+ */
+public final class PredictionFrame {
+
+  private final ClassTable classes;
+  private final float[] probabilities;
+
+  /**
+   * Constructs the frame from the output of the model.
+   *
+   * @param classes The categories of the model
+   * @param probabilities The probability of every category, indexed by category id, owned by the
+   *     frame from now on
+   */
+  PredictionFrame(final ClassTable classes, final float[] probabilities) {
+    this.classes = classes;
+    this.probabilities = probabilities;
+  }
+
+  /**
+   * Returns the categories of the model, to look up the ids of the game words once.
+   *
+   * @return the category table
+   */
+  public ClassTable getClassTable() {
+    return classes;
+  }
+
+  /**
+   * Returns the probability the model gives to a category.
+   *
+   * @param id The id of the category
+   * @return the probability of the category
+   */
+  public float getProbability(final int id) {
+    return probabilities[id];
+  }
+
+  /**
+   * Returns the probability the model gives to a category.
+   *
+   * @param category The category name, with spaces instead of underscores
+   * @return the probability of the category, or 0 if the model does not know the category
+   */
+  public float getProbability(final String category) {
+    final int id = classes.getId(category);
+
+    return id < 0 ? 0 : probabilities[id];
+  }
+
+  /**
+   * Returns a copy of the probabilities of every category.
+   *
+   * @return the probabilities, indexed by category id
+   */
+  public float[] getProbabilities() {
+    return probabilities.clone();
+  }
+
+  /**
+   * Returns the rank of a category, where 0 is the most likely category. Categories with the same
+   * probability are ranked by id.
+   *
+   * @param id The id of the category
+   * @return the rank of the category
+   */
+  public int getRank(final int id) {
+    final float probability = probabilities[id];
+
+    // the rank is the number of categories ranked before this one
+    int rank = 0;
+    for (int i = 0; i < probabilities.length; i++) {
+      if (probabilities[i] > probability || (probabilities[i] == probability && i < id)) {
+        rank++;
+      }
+    }
+
+    return rank;
+  }
+
+  /**
+   * Returns the rank of a category, where 0 is the most likely category.
+   *
+   * @param category The category name, with spaces instead of underscores
+   * @return the rank of the category, or -1 if the model does not know the category
+   */
+  public int getRank(final String category) {
+    final int id = classes.getId(category);
+
+    return id < 0 ? -1 : getRank(id);
+  }
+
+  /**
+   * Returns the ids of the K most likely categories, most likely first. Only K categories are kept
+   * while scanning the probabilities, so this is linear for the few predictions shown in a tick.
+   *
+   * @param k The number of categories to return
+   * @return the ids of the top K categories
+   */
+  public int[] getTopIds(final int k) {
+    final int size = Math.max(0, Math.min(k, probabilities.length));
+    final int[] top = new int[size];
+    int count = 0;
+
+    for (int id = 0; id < probabilities.length && size > 0; id++) {
+      final float probability = probabilities[id];
+      if (count == size && probabilities[top[size - 1]] >= probability) {
+        continue;
+      }
+
+      // insertion into the sorted top, after the categories at least as likely
+      int i = Math.min(count, size - 1);
+      while (i > 0 && probabilities[top[i - 1]] < probability) {
+        top[i] = top[i - 1];
+        i--;
+      }
+      top[i] = id;
+      count = Math.min(count + 1, size);
+    }
+
+    return top;
+  }
+
+  /**
+   * Returns the K most likely categories, most likely first.
+   *
+   * @param k The number of categories to return
+   * @return the top K classifications
+   */
+  public List<Classification> getTopK(final int k) {
+    final int[] top = getTopIds(k);
+
+    final List<Classification> classifications = new ArrayList<>(top.length);
+    for (final int id : top) {
+      classifications.add(new Classification(classes.getName(id), probabilities[id]));
+    }
+
+    return classifications;
+  }
+
+  /**
+   * Checks if a category is within the K most likely categories.
+   *
+   * @param category The category name, with spaces instead of underscores
+   * @param k The number of top categories to look at
+   * @return if the category is in the top K
+   */
+  public boolean isInTopK(final String category, final int k) {
+    final int rank = getRank(category);
+
+    return rank >= 0 && rank < k;
+  }
+
+  /**
+   * Checks if the drawing wins the game for the given category: the category must be in the top
+   * {@code accuracy} predictions with a probability of at least {@code confidence} percent.
+   *
+   * @param category The category name, with spaces instead of underscores
+   * @param accuracy The number of top categories the word must be in
+   * @param confidence The percentage the probability should reach
+   * @return if the drawing is a win
+   */
+  public boolean isWin(final String category, final int accuracy, final int confidence) {
+    final int id = classes.getId(category);
+
+    // the probability is checked first, it is cheaper than counting the rank
+    return id >= 0 && probabilities[id] * 100 >= confidence && getRank(id) < accuracy;
+  }
+
+  /**
+   * Builds the prediction strings of the top predictions, see {@link
+   * DoodlePrediction#getPredictionString(List, int)}.
+   *
+   * @param size The number of top predictions to include
+   * @param topK separator of the string
+   * @return a list of string consisting of the two strings of the prediction list
+   */
+  public List<String> getPredictionString(final int size, final int topK) {
+    final int[] top = getTopIds(size);
+    final StringBuilder first = new StringBuilder();
+    final StringBuilder second = new StringBuilder();
+
+    for (int i = 0; i < top.length; i++) {
+      (i < topK ? first : second)
+          .append(classes.getDisplayName(top[i]))
+          .append(System.lineSeparator())
+          .append(System.lineSeparator());
+    }
+
+    return List.of(first.toString(), second.toString());
+  }
+}
@@ -0,0 +1,126 @@
+package nz.ac.auckland.se206.ml;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the prediction rounds of the games on one scheduled thread. A round is a tick run at a fixed
+ * delay until it returns a result, fails or is cancelled, so a round waits on the scheduler between
+ * two ticks instead of keeping a thread in a loop. Ticks never overlap: a tick that takes longer
+ * than the delay pushes the next one back, so the next tick always classifies the latest drawing
+ * instead of queueing up behind older ones.
+ *
+ * <p>Rounds share the thread, a round that is no longer needed, e.g. a Zen game the player left,
+ * must be cancelled.
+ */
+public class PredictionService {
+
+  /**
+   * One tick of a round.
+   *
+   * @param <T> The result of the round
+   */
+  @FunctionalInterface
+  public interface Tick<T> {
+
+    /**
+     * Runs one tick of the round.
+     *
+     * @return the result of the round once it is over, or null to keep running it
+     * @throws Exception If the round cannot go on
+     */
+    T run() throws Exception;
+  }
+
+  /**
+   * A running round.
+   *
+   * @param <T> The result of the round
+   */
+  public static final class Round<T> {
+    private final CompletableFuture<T> result = new CompletableFuture<>();
+    private volatile ScheduledFuture<?> ticks;
+
+    private Round() {}
+
+    private void tick(final Tick<T> tick) {
+      if (result.isDone()) {
+        return;
+      }
+
+      try {
+        final T value = tick.run();
+        if (value != null) {
+          result.complete(value);
+        }
+      } catch (Exception | Error e) {
+        result.completeExceptionally(e);
+      }
+
+      if (result.isDone()) {
+        ticks.cancel(false);
+      }
+    }
+
+    /**
+     * Returns the result of the round, completed on the thread of the service. It is cancelled with
+     * the round.
+     *
+     * @return the future result of the round
+     */
+    public CompletableFuture<T> getResult() {
+      return result;
+    }
+
+    /** Stops the round, a tick that is running finishes but no other tick starts. */
+    public void cancel() {
+      result.cancel(false);
+      ticks.cancel(false);
+    }
+  }
+
+  private final ScheduledExecutorService executor;
+
+  /**
+   * Constructs a service running its rounds on an executor of the application.
+   *
+   * @param executor The executor of the rounds, a single thread keeps ticks from overlapping
+   */
+  public PredictionService(final ScheduledExecutorService executor) {
+    this.executor = executor;
+  }
+
+  /**
+   * Starts a round, its first tick runs right away.
+   *
+   * @param tick The work of each tick
+   * @param delayMillis The time between the end of a tick and the start of the next one
+   * @param <T> The result of the round
+   * @return the running round
+   */
+  public <T> Round<T> start(final Tick<T> tick, final long delayMillis) {
+    final Round<T> round = new Round<>();
+    // the first tick is delayed until the round knows its own future
+    synchronized (round) {
+      round.ticks =
+          executor.scheduleWithFixedDelay(
+              () -> {
+                synchronized (round) {
+                  round.tick(tick);
+                }
+              },
+              0,
+              delayMillis,
+              TimeUnit.MILLISECONDS);
+    }
+
+    return round;
+  }
+
+  /** Stops every round and the executor of the service. */
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+}
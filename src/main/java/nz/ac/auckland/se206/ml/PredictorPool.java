@@ -0,0 +1,214 @@
+package nz.ac.auckland.se206.ml;
+
+import ai.djl.inference.Predictor;
+import ai.djl.translate.TranslateException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of predictors for a single model. Predictors are created lazily up to the capacity
+ * of the pool, lent to one thread at a time and reused across calls. Closing the pool closes every
+ * predictor it created, so the native resources behind them are released deterministically instead
+ * of waiting for the garbage collector.
+ *
+ * @param <I> The input type of the predictors
+ * @param <O> The output type of the predictors
+ */
+public class PredictorPool<I, O> implements AutoCloseable {
+
+  // how often a thread waiting for a predictor checks if the pool was closed
+  private static final long CLOSED_CHECK_MILLIS = 50;
+
+  private final Supplier<Predictor<I, O>> factory;
+  private final int capacity;
+  private final BlockingQueue<Predictor<I, O>> idlePredictors;
+
+  // counters used to monitor the native resources held by the pool
+  private final AtomicInteger livePredictors = new AtomicInteger();
+  private final AtomicInteger busyPredictors = new AtomicInteger();
+  private final AtomicLong createdPredictors = new AtomicLong();
+
+  private volatile boolean closed = false;
+
+  /**
+   * Constructs a pool that creates its predictors with the given factory.
+   *
+   * @param factory Creates a new predictor, e.g. model::newPredictor
+   * @param capacity The maximum number of predictors alive at the same time
+   */
+  public PredictorPool(Supplier<Predictor<I, O>> factory, int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("The pool capacity must be at least 1");
+    }
+
+    this.factory = factory;
+    this.capacity = capacity;
+    this.idlePredictors = new ArrayBlockingQueue<>(capacity);
+  }
+
+  /**
+   * Runs a single prediction with a pooled predictor.
+   *
+   * @param input The input to predict
+   * @return The output of the predictor
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  public O predict(I input) throws TranslateException {
+    final Predictor<I, O> predictor = borrow();
+
+    try {
+      return predictor.predict(input);
+    } finally {
+      release(predictor);
+    }
+  }
+
+  /**
+   * Runs a batch prediction with a pooled predictor.
+   *
+   * @param inputs The inputs to predict
+   * @return The outputs of the predictor, in the same order as the inputs
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  public List<O> batchPredict(List<I> inputs) throws TranslateException {
+    final Predictor<I, O> predictor = borrow();
+
+    try {
+      return predictor.batchPredict(inputs);
+    } finally {
+      release(predictor);
+    }
+  }
+
+  /**
+   * Takes a predictor from the pool. An idle predictor is reused if there is one, otherwise a new
+   * one is created while the pool is below capacity. When the pool is full, this waits until
+   * another thread releases its predictor or the pool is closed.
+   *
+   * @return A predictor that only the calling thread may use until it is released
+   * @throws TranslateException If the pool is closed, also while waiting, or the thread is
+   *     interrupted while waiting
+   */
+  public Predictor<I, O> borrow() throws TranslateException {
+    checkOpen();
+
+    Predictor<I, O> predictor = idlePredictors.poll();
+
+    // grow the pool if nothing is idle and we are still below capacity
+    while (predictor == null) {
+      final int live = livePredictors.get();
+      if (live >= capacity) {
+        break;
+      }
+      if (livePredictors.compareAndSet(live, live + 1)) {
+        try {
+          predictor = factory.get();
+        } catch (RuntimeException e) {
+          livePredictors.decrementAndGet();
+          throw e;
+        }
+        createdPredictors.incrementAndGet();
+      }
+    }
+
+    // the pool is full, wait for a predictor to be released. Released predictors are closed once
+    // the pool is, so the wait checks regularly that there is still something to wait for
+    while (predictor == null) {
+      checkOpen();
+      try {
+        predictor = idlePredictors.poll(CLOSED_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new TranslateException("Interrupted while waiting for a predictor", e);
+      }
+    }
+
+    busyPredictors.incrementAndGet();
+
+    // the pool may have been closed while the predictor was being taken
+    if (closed) {
+      release(predictor);
+      checkOpen();
+    }
+
+    return predictor;
+  }
+
+  /**
+   * Gives a predictor back to the pool. If the pool has been closed in the meantime, the predictor
+   * is closed instead.
+   *
+   * @param predictor The predictor previously obtained from {@link #borrow()}
+   */
+  public void release(Predictor<I, O> predictor) {
+    busyPredictors.decrementAndGet();
+
+    if (closed || !idlePredictors.offer(predictor)) {
+      discard(predictor);
+      return;
+    }
+
+    // the pool may have been closed while the predictor was being returned
+    if (closed && idlePredictors.remove(predictor)) {
+      discard(predictor);
+    }
+  }
+
+  /** Closes every idle predictor. Predictors still in use are closed when they are released. */
+  @Override
+  public void close() {
+    closed = true;
+
+    Predictor<I, O> predictor;
+    while ((predictor = idlePredictors.poll()) != null) {
+      discard(predictor);
+    }
+  }
+
+  /**
+   * Returns the number of predictors currently alive, whether idle or in use.
+   *
+   * @return the number of live predictors
+   */
+  public int getLivePredictors() {
+    return livePredictors.get();
+  }
+
+  /**
+   * Returns the number of predictors currently lent to a thread.
+   *
+   * @return the number of predictors in use
+   */
+  public int getBusyPredictors() {
+    return busyPredictors.get();
+  }
+
+  /**
+   * Returns the number of predictors created since the pool was constructed.
+   *
+   * @return the total number of predictors created
+   */
+  public long getCreatedPredictors() {
+    return createdPredictors.get();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  private void checkOpen() throws TranslateException {
+    if (closed) {
+      throw new TranslateException("The predictor pool has been closed");
+    }
+  }
+
+  private void discard(Predictor<I, O> predictor) {
+    predictor.close();
+    livePredictors.decrementAndGet();
+  }
+}
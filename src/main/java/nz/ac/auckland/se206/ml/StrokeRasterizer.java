@@ -0,0 +1,153 @@
+package nz.ac.auckland.se206.ml;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import nz.ac.auckland.se206.util.AreaDownsampler;
+
+/**
+ * Keeps a copy of the drawing close to the resolution of the model, built from the strokes of the
+ * player instead of from snapshots of the canvas. The canvas reports every line it draws, which
+ * only queues it, and the prediction thread draws the queued lines into a small image when it needs
+ * the drawing. The small image is then shrunk to the input of the model by an {@link
+ * AreaDownsampler}, which gives the same input as a full size snapshot to within a few percent.
+ *
+ * <p>Lines can be reported from any thread, usually the JavaFX thread, while a single thread
+ * rasterizes them. Only the lines reported since the last rasterization are drawn, a clear of the
+ * canvas is queued with them so that the order of the operations is kept.
+ */
+public class StrokeRasterizer {
+
+  /** A line of the canvas, or a clear of the canvas when the width is 0. */
+  private static final class Segment {
+    private final float x0;
+    private final float y0;
+    private final float x1;
+    private final float y1;
+    private final float width;
+    private final int argb;
+
+    private Segment(
+        final float x0,
+        final float y0,
+        final float x1,
+        final float y1,
+        final float width,
+        final int argb) {
+      this.x0 = x0;
+      this.y0 = y0;
+      this.x1 = x1;
+      this.y1 = y1;
+      this.width = width;
+      this.argb = argb;
+    }
+  }
+
+  // the drawing is kept at 4 times the size of the input in each direction: the coverage
+  // antialiasing computes for lines under a pixel wide is too coarse to match the area average of
+  // a full size snapshot, and overlapping lines would add up their partial coverage
+  private static final int SUPERSAMPLING = 4;
+
+  private static final Segment CLEAR = new Segment(0, 0, 0, 0, 0, 0);
+
+  private final Queue<Segment> pending = new ConcurrentLinkedQueue<>();
+  private final int[] pixels;
+  private final Graphics2D graphics;
+  private final int imageWidth;
+  private final int imageHeight;
+  private final AreaDownsampler downsampler;
+  private final DoodleInput input;
+
+  // the stroke and the colour of the last line, which most lines share
+  private float strokeWidth = -1;
+  private int strokeArgb;
+
+  /**
+   * Constructs a rasterizer for a canvas, at the input width of the model.
+   *
+   * @param canvasWidth The width of the canvas
+   * @param canvasHeight The height of the canvas
+   */
+  public StrokeRasterizer(final int canvasWidth, final int canvasHeight) {
+    final int width = DoodlePrediction.INPUT_WIDTH;
+    final int height = AreaDownsampler.getTargetHeight(width, canvasWidth, canvasHeight);
+    imageWidth = width * SUPERSAMPLING;
+    imageHeight = height * SUPERSAMPLING;
+
+    final BufferedImage image =
+        new BufferedImage(imageWidth, imageHeight, BufferedImage.TYPE_INT_RGB);
+    pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    input = new DoodleInput(width, height);
+    downsampler = new AreaDownsampler(width);
+
+    graphics = image.createGraphics();
+    graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+    // keep the exact geometry of the lines, they are only a few pixels wide at this scale
+    graphics.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+    graphics.scale((double) imageWidth / canvasWidth, (double) imageHeight / canvasHeight);
+  }
+
+  /**
+   * Queues a line drawn on the canvas, with the default square caps of a JavaFX canvas.
+   *
+   * @param x0 The x coordinate of the start of the line, in canvas pixels
+   * @param y0 The y coordinate of the start of the line
+   * @param x1 The x coordinate of the end of the line
+   * @param y1 The y coordinate of the end of the line
+   * @param width The width of the line
+   * @param argb The colour of the line, black for the eraser
+   */
+  public void addLine(
+      final double x0,
+      final double y0,
+      final double x1,
+      final double y1,
+      final double width,
+      final int argb) {
+    if (width > 0) {
+      pending.add(new Segment((float) x0, (float) y0, (float) x1, (float) y1, (float) width, argb));
+    }
+  }
+
+  /** Queues a clear of the canvas. */
+  public void clear() {
+    pending.add(CLEAR);
+  }
+
+  /**
+   * Draws the queued lines and returns the drawing as the input of the model. This must always be
+   * called by the same thread.
+   *
+   * @return the drawing, which is overwritten by the next call
+   */
+  public DoodleInput rasterize() {
+    Segment segment;
+    while ((segment = pending.poll()) != null) {
+      if (segment == CLEAR) {
+        // the pixels are black when all their channels are 0
+        Arrays.fill(pixels, 0);
+        continue;
+      }
+
+      if (segment.width != strokeWidth || segment.argb != strokeArgb) {
+        strokeWidth = segment.width;
+        strokeArgb = segment.argb;
+        graphics.setStroke(
+            new BasicStroke(strokeWidth, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER));
+        graphics.setColor(new Color(strokeArgb, true));
+      }
+      graphics.draw(new Line2D.Float(segment.x0, segment.y0, segment.x1, segment.y1));
+    }
+
+    final float[] gray = downsampler.downsample(pixels, imageWidth, imageHeight);
+    System.arraycopy(gray, 0, input.getPixels(), 0, gray.length);
+    return input;
+  }
+}
@@ -0,0 +1,138 @@
+package nz.ac.auckland.se206.replay;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+import nz.ac.auckland.se206.replay.SessionRecording.Event;
+import nz.ac.auckland.se206.replay.SessionRecording.EventType;
+import nz.ac.auckland.se206.replay.SessionRecording.Outcome;
+
+/**
+ * Records the mouse events of a game on the canvas, so that the game can be replayed later by the
+ * {@link SessionReplayer}. Recording is off unless the game is started with
+ * -Dquickdraw.record.dir=&lt;directory&gt;, every game is then saved to that directory when it
+ * ends.
+ *
+ * <p>The events are reported on the JavaFX thread, a recorder must not be shared between threads.
+ */
+public class SessionRecorder {
+
+  /** System property naming the directory the recordings are saved to. */
+  public static final String RECORD_DIR_PROPERTY = "quickdraw.record.dir";
+
+  private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+  private final Path directory;
+  private final SessionRecording recording;
+  private final long startNanos = System.nanoTime();
+  private boolean saved = false;
+
+  /**
+   * Starts recording a game, if recording is enabled.
+   *
+   * @param word The word to draw
+   * @param accuracy The number of top predictions the word must be in to win
+   * @param confidence The percentage the probability of the word must reach to win
+   * @param timeLimit The time to draw in seconds
+   * @param zen true if the game has no timer and cannot be won
+   * @param width The width of the canvas
+   * @param height The height of the canvas
+   */
+  public SessionRecorder(
+      final String word,
+      final int accuracy,
+      final int confidence,
+      final int timeLimit,
+      final boolean zen,
+      final int width,
+      final int height) {
+    final String property = System.getProperty(RECORD_DIR_PROPERTY);
+    directory = property == null || property.isBlank() ? null : Paths.get(property);
+    recording =
+        directory == null
+            ? null
+            : new SessionRecording(word, accuracy, confidence, timeLimit, zen, width, height);
+  }
+
+  public boolean isEnabled() {
+    return recording != null;
+  }
+
+  public void onStart() {
+    add(EventType.START, 0, 0, 0);
+  }
+
+  public void onPress(final double x, final double y) {
+    add(EventType.PRESS, x, y, 0);
+  }
+
+  public void onDrag(final double x, final double y) {
+    add(EventType.DRAG, x, y, 0);
+  }
+
+  public void onRelease() {
+    add(EventType.RELEASE, 0, 0, 0);
+  }
+
+  /**
+   * Records a change of brush.
+   *
+   * @param argb The colour of the brush
+   * @param size The size of the brush
+   */
+  public void onBrush(final int argb, final double size) {
+    add(EventType.BRUSH, size, 0, argb);
+  }
+
+  public void onClear() {
+    add(EventType.CLEAR, 0, 0, 0);
+  }
+
+  private void add(final EventType type, final double x, final double y, final int argb) {
+    if (recording == null || saved) {
+      return;
+    }
+
+    final long time = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    recording.add(new Event(type, time, (float) x, (float) y, argb));
+  }
+
+  /**
+   * Ends the recording and saves it, once. Nothing is saved when recording is disabled or when
+   * nothing was drawn.
+   *
+   * @param outcome The outcome of the game
+   * @return the file of the recording, or null if nothing was saved
+   */
+  public Path save(final Outcome outcome) {
+    if (recording == null || saved) {
+      return null;
+    }
+
+    add(EventType.END, 0, 0, 0);
+    saved = true;
+    recording.setOutcome(outcome);
+    if (recording.getEvents().stream().noneMatch(event -> event.getType() == EventType.DRAG)) {
+      return null;
+    }
+
+    final Path file =
+        directory.resolve(
+            LocalDateTime.now().format(FILE_DATE)
+                + "-"
+                + recording.getWord().replace(" ", "_")
+                + ".qdrec");
+    try {
+      Files.createDirectories(directory);
+      recording.write(file);
+      return file;
+    } catch (IOException e) {
+      e.printStackTrace();
+      return null;
+    }
+  }
+}
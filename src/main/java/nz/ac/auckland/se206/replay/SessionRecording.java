@@ -0,0 +1,285 @@
+package nz.ac.auckland.se206.replay;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The mouse events of one game on the canvas, with the settings needed to replay the game. Events
+ * are timed in milliseconds from the loading of the canvas, and stored as raw mouse coordinates so
+ * that a replay goes through the same stroke logic as the game.
+ *
+ * <p>The file is a gzipped sequence of primitive values: a header with the game settings and the
+ * outcome, then one record of a few bytes per event.
+ */
+public final class SessionRecording {
+
+  /** The kinds of recorded events. */
+  public enum EventType {
+    /** The ready button was pressed and the timer started. */
+    START,
+    /** The mouse was pressed on the canvas, which starts a stroke. */
+    PRESS,
+    /** The mouse was dragged on the canvas, which extends the stroke. */
+    DRAG,
+    /** The mouse was released, which ends the stroke. */
+    RELEASE,
+    /** The colour or the size of the brush changed, the eraser is a black brush. */
+    BRUSH,
+    /** The canvas was cleared. */
+    CLEAR,
+    /** The game was won or lost, or left in Zen mode. */
+    END
+  }
+
+  /** The outcome of the recorded game. */
+  public enum Outcome {
+    UNFINISHED,
+    WIN,
+    LOSS
+  }
+
+  /** One recorded event. */
+  public static final class Event {
+    private final EventType type;
+    private final long time;
+    private final float x;
+    private final float y;
+    private final int argb;
+
+    /**
+     * Constructs an event.
+     *
+     * @param type The kind of event
+     * @param time The time of the event in milliseconds from the loading of the canvas
+     * @param x The x coordinate of the mouse, or the brush size of a brush event
+     * @param y The y coordinate of the mouse
+     * @param argb The colour of a brush event
+     */
+    public Event(
+        final EventType type, final long time, final float x, final float y, final int argb) {
+      this.type = type;
+      this.time = time;
+      this.x = x;
+      this.y = y;
+      this.argb = argb;
+    }
+
+    public EventType getType() {
+      return type;
+    }
+
+    public long getTime() {
+      return time;
+    }
+
+    public float getX() {
+      return x;
+    }
+
+    public float getY() {
+      return y;
+    }
+
+    /**
+     * Returns the size of the brush of a brush event.
+     *
+     * @return the brush size in pixels
+     */
+    public float getBrushSize() {
+      return x;
+    }
+
+    public int getArgb() {
+      return argb;
+    }
+  }
+
+  // "QDR" followed by the version of the format
+  private static final int MAGIC = 0x51445201;
+
+  /**
+   * Reads a recording from a file.
+   *
+   * @param file The recording
+   * @return the recording
+   * @throws IOException If the file cannot be read or is not a recording
+   */
+  public static SessionRecording read(final Path file) throws IOException {
+    try (DataInputStream in =
+        new DataInputStream(
+            new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+      if (in.readInt() != MAGIC) {
+        throw new IOException(file + " is not a session recording");
+      }
+
+      final SessionRecording recording =
+          new SessionRecording(
+              in.readUTF(),
+              in.readInt(),
+              in.readInt(),
+              in.readInt(),
+              in.readBoolean(),
+              in.readInt(),
+              in.readInt());
+      recording.outcome = Outcome.values()[in.readByte()];
+
+      final int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        final EventType type = EventType.values()[in.readByte()];
+        final long time = in.readInt();
+        switch (type) {
+          case PRESS:
+          case DRAG:
+            recording.add(new Event(type, time, in.readFloat(), in.readFloat(), 0));
+            break;
+          case BRUSH:
+            final int argb = in.readInt();
+            recording.add(new Event(type, time, in.readFloat(), 0, argb));
+            break;
+          default:
+            recording.add(new Event(type, time, 0, 0, 0));
+        }
+      }
+
+      return recording;
+    }
+  }
+
+  private final String word;
+  private final int accuracy;
+  private final int confidence;
+  private final int timeLimit;
+  private final boolean zen;
+  private final int width;
+  private final int height;
+  private final List<Event> events = new ArrayList<>();
+  private Outcome outcome = Outcome.UNFINISHED;
+
+  /**
+   * Constructs an empty recording.
+   *
+   * @param word The word to draw
+   * @param accuracy The number of top predictions the word must be in to win
+   * @param confidence The percentage the probability of the word must reach to win
+   * @param timeLimit The time to draw in seconds
+   * @param zen true if the game has no timer and cannot be won
+   * @param width The width of the canvas
+   * @param height The height of the canvas
+   */
+  public SessionRecording(
+      final String word,
+      final int accuracy,
+      final int confidence,
+      final int timeLimit,
+      final boolean zen,
+      final int width,
+      final int height) {
+    this.word = word;
+    this.accuracy = accuracy;
+    this.confidence = confidence;
+    this.timeLimit = timeLimit;
+    this.zen = zen;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Writes the recording to a file.
+   *
+   * @param file The file to write
+   * @throws IOException If the file cannot be written
+   */
+  public void write(final Path file) throws IOException {
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(file))))) {
+      out.writeInt(MAGIC);
+      out.writeUTF(word);
+      out.writeInt(accuracy);
+      out.writeInt(confidence);
+      out.writeInt(timeLimit);
+      out.writeBoolean(zen);
+      out.writeInt(width);
+      out.writeInt(height);
+      out.writeByte(outcome.ordinal());
+
+      out.writeInt(events.size());
+      for (final Event event : events) {
+        out.writeByte(event.getType().ordinal());
+        out.writeInt((int) event.getTime());
+        switch (event.getType()) {
+          case PRESS:
+          case DRAG:
+            out.writeFloat(event.getX());
+            out.writeFloat(event.getY());
+            break;
+          case BRUSH:
+            out.writeInt(event.getArgb());
+            out.writeFloat(event.getBrushSize());
+            break;
+          default:
+            break;
+        }
+      }
+    }
+  }
+
+  /**
+   * Appends an event, which must not be older than the last one.
+   *
+   * @param event The event
+   */
+  public void add(final Event event) {
+    events.add(event);
+  }
+
+  public List<Event> getEvents() {
+    return Collections.unmodifiableList(events);
+  }
+
+  public String getWord() {
+    return word;
+  }
+
+  public int getAccuracy() {
+    return accuracy;
+  }
+
+  public int getConfidence() {
+    return confidence;
+  }
+
+  public int getTimeLimit() {
+    return timeLimit;
+  }
+
+  public boolean isZen() {
+    return zen;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public Outcome getOutcome() {
+    return outcome;
+  }
+
+  public void setOutcome(final Outcome outcome) {
+    this.outcome = outcome;
+  }
+}
@@ -0,0 +1,320 @@
+package nz.ac.auckland.se206.replay;
+
+import ai.djl.ModelException;
+import ai.djl.translate.TranslateException;
+import com.opencsv.CSVWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import nz.ac.auckland.se206.ml.DoodlePrediction;
+import nz.ac.auckland.se206.ml.InferenceScheduler;
+import nz.ac.auckland.se206.ml.PredictionFrame;
+import nz.ac.auckland.se206.ml.StrokeRasterizer;
+import nz.ac.auckland.se206.replay.SessionRecording.Event;
+import nz.ac.auckland.se206.replay.SessionRecording.EventType;
+import nz.ac.auckland.se206.util.LatencyHistogram;
+
+/**
+ * Replays recorded games without the GUI, to compare the prediction performance of real play
+ * sessions between builds. The strokes go through the same stroke logic and the same {@link
+ * StrokeRasterizer} as in the game, and the drawing is classified by {@link DoodlePrediction}
+ * whenever the {@link InferenceScheduler} of the game would classify it.
+ *
+ * <p>The replay runs on a virtual clock: events are applied at the time they were recorded, and the
+ * clock moves forward by the real time each prediction takes, like the prediction loop of the game
+ * does. So the time to win depends on the speed of the build, while every decision before it is
+ * deterministic.
+ *
+ * <p>Usage: {@code SessionReplayer <recording|directory>...}. A CSV line with the time to win and
+ * the latency percentiles of the predictions is printed for every recording, and for all of them
+ * together.
+ */
+public class SessionReplayer {
+
+  // how often the prediction loop of the game checks the scheduler
+  private static final long POLL_MILLIS = 20;
+
+  /**
+   * Replays every recording given and prints the report.
+   *
+   * @param args The recordings, or directories of recordings
+   * @throws ModelException If there is an error in reading the input/output of the DL model.
+   * @throws IOException If the model or a recording cannot be read.
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  public static void main(final String[] args)
+      throws ModelException, IOException, TranslateException {
+    if (args.length == 0) {
+      throw new IllegalArgumentException("You need to provide the recordings to replay.");
+    }
+
+    final List<Path> recordings = new ArrayList<>();
+    for (final String arg : args) {
+      final Path path = Paths.get(arg);
+      if (Files.isDirectory(path)) {
+        try (Stream<Path> files = Files.list(path)) {
+          recordings.addAll(
+              files
+                  .filter(file -> file.toString().endsWith(".qdrec"))
+                  .sorted()
+                  .collect(Collectors.toList()));
+        }
+      } else {
+        recordings.add(path);
+      }
+    }
+
+    final DoodlePrediction model = new DoodlePrediction();
+    final SessionReplayer replayer = new SessionReplayer(model);
+    final Result total = new Result("all", "", "", new LatencyHistogram());
+
+    try (CSVWriter csv =
+        new CSVWriter(
+            new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)))) {
+      csv.writeNext(Result.HEADER, false);
+
+      for (final Path file : recordings) {
+        final Result result = replayer.replay(file.toString(), SessionRecording.read(file));
+        csv.writeNext(result.toRow(), false);
+        csv.flush();
+        total.add(result);
+      }
+      csv.writeNext(total.toRow(), false);
+    } finally {
+      model.closeManager();
+    }
+  }
+
+  private final DoodlePrediction model;
+
+  /**
+   * Constructs a replayer using the given model.
+   *
+   * @param model The model classifying the replayed drawings
+   */
+  public SessionReplayer(final DoodlePrediction model) {
+    this.model = model;
+  }
+
+  /**
+   * Replays a recorded game until it is won or its timer runs out.
+   *
+   * @param name The name of the recording in the report
+   * @param recording The recorded game
+   * @return the time to win and the latencies of the predictions
+   * @throws TranslateException If there is an error in reading the input/output of the DL model.
+   */
+  public Result replay(final String name, final SessionRecording recording)
+      throws TranslateException {
+    final List<Event> events = recording.getEvents();
+    final Result result =
+        new Result(
+            name, recording.getWord(), recording.getOutcome().toString(), new LatencyHistogram());
+    if (events.isEmpty()) {
+      return result;
+    }
+
+    final Replay canvas = new Replay(recording.getWidth(), recording.getHeight());
+    final long start = getFirstTime(events, EventType.START);
+    final long lastEvent = events.get(events.size() - 1).getTime();
+    // the game ends with its timer, a Zen game once the player stops drawing
+    final long end =
+        recording.isZen()
+            ? lastEvent + InferenceScheduler.DEFAULT_MAX_INTERVAL_MILLIS
+            : start + TimeUnit.SECONDS.toMillis(recording.getTimeLimit());
+
+    final InferenceScheduler scheduler = new InferenceScheduler(toNanos(start));
+    long predictedVersion = -1;
+    int next = 0;
+
+    // like the game, the prediction loop starts with the first stroke
+    for (long now = getFirstTime(events, EventType.DRAG); now <= end; now += POLL_MILLIS) {
+      // draw what the player drew since the last check
+      while (next < events.size() && events.get(next).getTime() <= now) {
+        final Event event = events.get(next++);
+        canvas.apply(event);
+        if (event.getType() == EventType.DRAG) {
+          scheduler.onStroke(toNanos(event.getTime()));
+        } else if (event.getType() == EventType.RELEASE || event.getType() == EventType.CLEAR) {
+          scheduler.onStrokeEnd(toNanos(event.getTime()));
+        }
+      }
+
+      if (predictedVersion == canvas.version || !scheduler.isDue(toNanos(now))) {
+        continue;
+      }
+
+      predictedVersion = canvas.version;
+      scheduler.onPredicted(toNanos(now));
+      final long tickStart = System.nanoTime();
+      final PredictionFrame frame = model.getPredictionFrame(canvas.rasterizer.rasterize());
+      final long latency = System.nanoTime() - tickStart;
+      result.record(latency);
+
+      // the prediction loop only checks the scheduler again once the prediction is done
+      now += TimeUnit.NANOSECONDS.toMillis(latency);
+      if (!recording.isZen()
+          && frame.isWin(recording.getWord(), recording.getAccuracy(), recording.getConfidence())) {
+        result.timeToWin = now - start;
+        break;
+      }
+    }
+
+    return result;
+  }
+
+  private static long getFirstTime(final List<Event> events, final EventType type) {
+    for (final Event event : events) {
+      if (event.getType() == type) {
+        return event.getTime();
+      }
+    }
+
+    return events.get(0).getTime();
+  }
+
+  private static long toNanos(final long millis) {
+    return TimeUnit.MILLISECONDS.toNanos(millis);
+  }
+
+  /** The canvas of a replayed game, drawn with the stroke logic of the game. */
+  private static final class Replay {
+    private final StrokeRasterizer rasterizer;
+    private long version = 0;
+    // the dodger blue brush the canvas starts with
+    private int brushArgb = 0xff1e90ff;
+    private float brushSize = 12;
+    private float currentX;
+    private float currentY;
+
+    private Replay(final int width, final int height) {
+      rasterizer = new StrokeRasterizer(width, height);
+    }
+
+    private void apply(final Event event) {
+      switch (event.getType()) {
+        case PRESS:
+          currentX = event.getX();
+          currentY = event.getY();
+          break;
+        case DRAG:
+          // like the drag handler of the canvas, the line ends half a brush up and left
+          final float x = event.getX() - brushSize / 2;
+          final float y = event.getY() - brushSize / 2;
+          rasterizer.addLine(currentX, currentY, x, y, brushSize, brushArgb);
+          currentX = x;
+          currentY = y;
+          version++;
+          break;
+        case BRUSH:
+          brushSize = event.getBrushSize();
+          brushArgb = event.getArgb();
+          break;
+        case CLEAR:
+          rasterizer.clear();
+          version++;
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  /** The time to win and the latencies of the predictions of one or more replayed games. */
+  public static final class Result {
+    private static final String[] HEADER = {
+      "recording",
+      "word",
+      "recorded outcome",
+      "time to win (s)",
+      "predictions",
+      "p50 (ms)",
+      "p95 (ms)",
+      "p99 (ms)",
+      "max (ms)",
+      "mean (ms)"
+    };
+
+    private final String name;
+    private final String word;
+    private final String outcome;
+    private final LatencyHistogram latencies;
+    private long timeToWin = -1;
+    private long totalNanos;
+    private long maxNanos;
+
+    private Result(
+        final String name,
+        final String word,
+        final String outcome,
+        final LatencyHistogram latencies) {
+      this.name = name;
+      this.word = word;
+      this.outcome = outcome;
+      this.latencies = latencies;
+    }
+
+    private void record(final long nanos) {
+      latencies.record(nanos);
+      totalNanos += nanos;
+      maxNanos = Math.max(maxNanos, nanos);
+    }
+
+    private void add(final Result other) {
+      latencies.add(other.latencies);
+      totalNanos += other.totalNanos;
+      maxNanos = Math.max(maxNanos, other.maxNanos);
+    }
+
+    /**
+     * Returns the time from the start of the timer to the prediction that wins the game, including
+     * the time taken by the predictions.
+     *
+     * @return the time to win in milliseconds, or -1 if the replay does not win
+     */
+    public long getTimeToWin() {
+      return timeToWin;
+    }
+
+    public LatencyHistogram getLatencies() {
+      return latencies;
+    }
+
+    private String[] toRow() {
+      final long count = latencies.getCount();
+      return new String[] {
+        name,
+        word,
+        outcome,
+        timeToWin < 0 ? "" : format(timeToWin / 1000.0),
+        String.valueOf(count),
+        formatPercentile(50),
+        formatPercentile(95),
+        formatPercentile(99),
+        format(maxNanos / 1e6),
+        format(count == 0 ? 0 : totalNanos / 1e6 / count)
+      };
+    }
+
+    private String formatPercentile(final double percentile) {
+      final long micros = latencies.getPercentile(percentile);
+
+      // the histogram rounds up to the end of a bucket, which may be above the slowest prediction
+      return micros < 0 ? "" : format(Math.min(micros / 1000.0, maxNanos / 1e6));
+    }
+
+    private static String format(final double value) {
+      return value < 0 ? "" : String.format(Locale.ROOT, "%.2f", value);
+    }
+  }
+}
@@ -0,0 +1,339 @@
+package nz.ac.auckland.se206.util;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the background threads of the application, so that their number stays the same however long
+ * a kiosk runs instead of growing with every game, sound and speech. Each kind of work has its own
+ * named pool with a bounded queue, and every pool is shut down when the application closes.
+ *
+ * <ul>
+ *   <li>inference: the scheduled thread of the predictions, one round at a time
+ *   <li>speech: the text to speech, one sentence at a time so that they never talk over each other;
+ *       speeches queued behind too many others are dropped
+ *   <li>audio: loading and playing the sound effects, dropped when the queue is full
+ *   <li>io: model loading and other blocking work. When the queue is full the work is rejected with
+ *       a {@link RejectedExecutionException} rather than run by the caller, which may be the JavaFX
+ *       thread
+ * </ul>
+ *
+ * <p>Once the pools are shut down, the executors returned for them drop their work, or reject it
+ * for the io pool, instead of throwing {@link IllegalStateException} at e.g. a game that ends while
+ * the application closes.
+ *
+ * <p>Start the game with -Dquickdraw.io.virtual=true to run the io work on virtual threads instead,
+ * on a Java runtime that has them. Virtual threads are not pooled, so the io queue has no bound
+ * then.
+ */
+public final class AppExecutors {
+
+  /** System property running the io work on virtual threads when the runtime supports it. */
+  public static final String VIRTUAL_IO_PROPERTY = "quickdraw.io.virtual";
+
+  /** The pools of the application. */
+  public enum Pool {
+    INFERENCE("inference", 1, 0, false),
+    SPEECH("speech", 1, 8, false),
+    AUDIO("audio", 2, 16, false),
+    IO("io", 2, 64, true);
+
+    private final String label;
+    private final int threads;
+    private final int queueSize;
+    // rejected work is reported to the caller instead of being dropped
+    private final boolean rejects;
+
+    Pool(final String label, final int threads, final int queueSize, final boolean rejects) {
+      this.label = label;
+      this.threads = threads;
+      this.queueSize = queueSize;
+      this.rejects = rejects;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  // the pools of the application
+  private static final AppExecutors application = new AppExecutors();
+
+  private final Map<Pool, ExecutorService> executors = new EnumMap<>(Pool.class);
+  // the executors handed out once the pools are shut down, which never run anything
+  private final Map<Pool, ExecutorService> closedExecutors = new EnumMap<>(Pool.class);
+  private final Map<Pool, AtomicLong> rejected = new EnumMap<>(Pool.class);
+  private boolean shutdown = false;
+
+  /** Constructs a set of pools apart from the ones of the application, e.g. for the tests. */
+  AppExecutors() {
+    for (final Pool pool : Pool.values()) {
+      rejected.put(pool, new AtomicLong());
+    }
+  }
+
+  /**
+   * Returns the scheduled executor of the predictions.
+   *
+   * @return the inference executor
+   */
+  public static ScheduledExecutorService inference() {
+    return (ScheduledExecutorService) get(Pool.INFERENCE);
+  }
+
+  /**
+   * Returns the executor of the text to speech.
+   *
+   * @return the speech executor
+   */
+  public static ExecutorService speech() {
+    return get(Pool.SPEECH);
+  }
+
+  /**
+   * Returns the executor of the sound effects.
+   *
+   * @return the audio executor
+   */
+  public static ExecutorService audio() {
+    return get(Pool.AUDIO);
+  }
+
+  /**
+   * Returns the executor of blocking work.
+   *
+   * @return the io executor
+   */
+  public static ExecutorService io() {
+    return get(Pool.IO);
+  }
+
+  /**
+   * Returns the executor of a pool, creating its threads on first use. Once the pools are shut
+   * down, this returns an executor that drops, or for the io pool rejects, all its work.
+   *
+   * @param pool The pool
+   * @return the executor of the pool
+   */
+  public static ExecutorService get(final Pool pool) {
+    return application.getExecutor(pool);
+  }
+
+  /**
+   * Returns the executor of one of these pools, see {@link #get(Pool)}.
+   *
+   * @param pool The pool
+   * @return the executor of the pool
+   */
+  synchronized ExecutorService getExecutor(final Pool pool) {
+    if (shutdown) {
+      return closedExecutors.computeIfAbsent(pool, this::createClosed);
+    }
+
+    return executors.computeIfAbsent(pool, this::create);
+  }
+
+  private ExecutorService create(final Pool pool) {
+    final ThreadFactory threads = new NamedThreadFactory("quickdraw-" + pool.getLabel());
+
+    switch (pool) {
+      case INFERENCE:
+        final ScheduledThreadPoolExecutor scheduled =
+            new ScheduledThreadPoolExecutor(pool.threads, threads, countRejected(pool));
+        // cancelled rounds leave the queue at once instead of when their next tick was due
+        scheduled.setRemoveOnCancelPolicy(true);
+        return scheduled;
+      case IO:
+        if (Boolean.getBoolean(VIRTUAL_IO_PROPERTY)) {
+          final ExecutorService virtual = createVirtualExecutor();
+          if (virtual != null) {
+            return virtual;
+          }
+          System.err.println("Virtual threads are not available, io runs on platform threads");
+        }
+        // falls through to the bounded pool
+      default:
+        return createBounded(pool, threads);
+    }
+  }
+
+  private ExecutorService createBounded(final Pool pool, final ThreadFactory threads) {
+    final ThreadPoolExecutor executor =
+        new ThreadPoolExecutor(
+            pool.threads,
+            pool.threads,
+            30,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(pool.queueSize),
+            threads,
+            countRejected(pool));
+    // idle pools give their threads back between games
+    executor.allowCoreThreadTimeOut(true);
+
+    return executor;
+  }
+
+  /**
+   * Creates an executor that is already shut down, so that everything given to it is handled like
+   * the work of a full pool: dropped, or rejected for the io pool. It never starts a thread.
+   *
+   * @param pool The pool that was shut down
+   * @return the executor handed out for the pool
+   */
+  private ExecutorService createClosed(final Pool pool) {
+    final ThreadFactory threads = new NamedThreadFactory("quickdraw-" + pool.getLabel());
+    final ThreadPoolExecutor executor =
+        pool == Pool.INFERENCE
+            ? new ScheduledThreadPoolExecutor(1, threads, countRejected(pool))
+            : new ThreadPoolExecutor(
+                1,
+                1,
+                0,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1),
+                threads,
+                countRejected(pool));
+    executor.shutdown();
+
+    return executor;
+  }
+
+  private RejectedExecutionHandler countRejected(final Pool pool) {
+    final RejectedExecutionHandler fallback =
+        pool.rejects
+            ? new ThreadPoolExecutor.AbortPolicy()
+            : new ThreadPoolExecutor.DiscardPolicy();
+
+    return (task, executor) -> {
+      rejected.get(pool).incrementAndGet();
+      fallback.rejectedExecution(task, executor);
+    };
+  }
+
+  /**
+   * Creates an executor starting a virtual thread per task, found by reflection so that the game
+   * still runs on Java 17.
+   *
+   * @return the executor, or null if the runtime has no virtual threads
+   */
+  private static ExecutorService createVirtualExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the number of tasks a pool dropped or rejected.
+   *
+   * @param pool The pool
+   * @return the number of tasks that did not fit in the pool
+   */
+  long getRejectedCount(final Pool pool) {
+    return rejected.get(pool).get();
+  }
+
+  /**
+   * Formats the state of every pool of the application that has started, one line each.
+   *
+   * @return the threads, queued tasks, completed tasks and rejected tasks of the pools
+   */
+  public static String getReport() {
+    return application.report();
+  }
+
+  private synchronized String report() {
+    final StringBuilder report = new StringBuilder();
+    for (final Map.Entry<Pool, ExecutorService> entry : executors.entrySet()) {
+      final Pool pool = entry.getKey();
+      report.append(String.format("%-10s", pool.getLabel()));
+
+      if (entry.getValue() instanceof ThreadPoolExecutor) {
+        final ThreadPoolExecutor executor = (ThreadPoolExecutor) entry.getValue();
+        report.append(
+            String.format(
+                "%d/%d busy %3d queued %6d done %3d dropped%n",
+                executor.getActiveCount(),
+                executor.getPoolSize(),
+                executor.getQueue().size(),
+                executor.getCompletedTaskCount(),
+                rejected.get(pool).get()));
+      } else {
+        report.append(String.format("virtual threads%n"));
+      }
+    }
+
+    return report.toString();
+  }
+
+  /**
+   * Stops every pool: queued work is given a short time to finish, then running work is
+   * interrupted. Called once when the application closes.
+   *
+   * @param timeoutMillis The time given to the queued work of all the pools
+   */
+  public static void shutdown(final long timeoutMillis) {
+    application.close(timeoutMillis);
+  }
+
+  /**
+   * Stops every one of these pools, see {@link #shutdown(long)}.
+   *
+   * @param timeoutMillis The time given to the queued work of all the pools
+   */
+  void close(final long timeoutMillis) {
+    final Map<Pool, ExecutorService> running;
+    synchronized (this) {
+      shutdown = true;
+      running = new EnumMap<>(executors);
+    }
+
+    for (final ExecutorService executor : running.values()) {
+      executor.shutdown();
+    }
+
+    final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    for (final ExecutorService executor : running.values()) {
+      try {
+        final long left = deadline - System.nanoTime();
+        if (!executor.awaitTermination(Math.max(0, left), TimeUnit.NANOSECONDS)) {
+          executor.shutdownNow();
+        }
+      } catch (InterruptedException e) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /** Names the threads of a pool and makes them daemons, they never keep the application alive. */
+  private static final class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private NamedThreadFactory(final String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+      final Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
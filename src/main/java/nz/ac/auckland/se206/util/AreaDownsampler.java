@@ -0,0 +1,269 @@
+package nz.ac.auckland.se206.util;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.Arrays;
+
+/**
+ * Shrinks images to a fixed width and converts them to grayscale in a single pass over the source
+ * pixels. Every output pixel is the average of the source area it covers, weighting the source
+ * pixels that only partly fall into it, so thin strokes keep their weight instead of disappearing
+ * between sampled pixels. The height follows the aspect ratio of the source, like the FIT_TO_WIDTH
+ * mode of Scalr.
+ *
+ * <p>The output buffer and the lookup tables are reused between calls, so an instance must only be
+ * used by one thread at a time.
+ */
+public class AreaDownsampler {
+
+  /**
+   * Computes the height of the output for a source size, rounded the same way as Scalr.
+   *
+   * @param targetWidth The width of the output
+   * @param sourceWidth The width of the source
+   * @param sourceHeight The height of the source
+   * @return the height of the output
+   */
+  public static int getTargetHeight(
+      final int targetWidth, final int sourceWidth, final int sourceHeight) {
+    return Math.max(1, Math.round(targetWidth * ((float) sourceHeight / sourceWidth)));
+  }
+
+  private final int targetWidth;
+  private int targetHeight;
+
+  // lookup tables of the current source size: source column/row i adds weight[i] of its value
+  // to output column/row index[i] and the rest to the next one
+  private int sourceWidth = -1;
+  private int sourceHeight = -1;
+  private int[] columnIndex;
+  private float[] columnWeight;
+  // the source columns starting in output column c are columnStart[c] to columnStart[c + 1] - 1
+  private int[] columnStart;
+  private int[] rowIndex;
+  private float[] rowWeight;
+
+  private int[] rowPixels;
+  // gray levels of the current source row, summed per output column
+  private float[] rowSums = new float[0];
+  private float[] output = new float[0];
+
+  /**
+   * Constructs a downsampler for the given output width.
+   *
+   * @param targetWidth The width of the output, e.g. 65 for the doodle model
+   */
+  public AreaDownsampler(final int targetWidth) {
+    if (targetWidth < 1) {
+      throw new IllegalArgumentException("The target width must be at least 1");
+    }
+
+    this.targetWidth = targetWidth;
+  }
+
+  /**
+   * Downsamples an image into grayscale values between 0 and 1.
+   *
+   * @param image The image to downsample, at least as wide as the output
+   * @return the grayscale output row by row, which is overwritten by the next call
+   */
+  public float[] downsample(final BufferedImage image) {
+    prepare(image.getWidth(), image.getHeight());
+
+    final WritableRaster raster = image.getRaster();
+    if ((image.getType() == BufferedImage.TYPE_INT_RGB
+            || image.getType() == BufferedImage.TYPE_INT_ARGB)
+        && raster.getDataBuffer() instanceof DataBufferInt
+        && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+        && raster.getSampleModelTranslateX() == 0
+        && raster.getSampleModelTranslateY() == 0) {
+      // read the packed pixels directly instead of converting them row by row
+      final int stride =
+          ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride();
+      final int[] pixels = ((DataBufferInt) raster.getDataBuffer()).getData();
+      for (int y = 0; y < sourceHeight; y++) {
+        accumulateRow(pixels, y * stride, y);
+      }
+    } else {
+      for (int y = 0; y < sourceHeight; y++) {
+        image.getRGB(0, y, sourceWidth, 1, rowPixels, 0, sourceWidth);
+        accumulateRow(rowPixels, 0, y);
+      }
+    }
+
+    return normalise();
+  }
+
+  /**
+   * Downsamples a raw ARGB raster into grayscale values between 0 and 1.
+   *
+   * @param argb The ARGB pixels row by row
+   * @param width The width of the raster, at least as wide as the output
+   * @param height The height of the raster
+   * @return the grayscale output row by row, which is overwritten by the next call
+   */
+  public float[] downsample(final int[] argb, final int width, final int height) {
+    prepare(width, height);
+
+    for (int y = 0; y < height; y++) {
+      accumulateRow(argb, y * width, y);
+    }
+
+    return normalise();
+  }
+
+  public int getTargetWidth() {
+    return targetWidth;
+  }
+
+  /**
+   * Returns the height of the last output.
+   *
+   * @return the height of the last output
+   */
+  public int getTargetHeight() {
+    return targetHeight;
+  }
+
+  /**
+   * Clears the output and rebuilds the lookup tables when the source size changes.
+   *
+   * @param width The width of the source
+   * @param height The height of the source
+   */
+  private void prepare(final int width, final int height) {
+    if (width < targetWidth) {
+      throw new IllegalArgumentException(
+          "Cannot downsample a " + width + " pixels wide image to " + targetWidth + " pixels");
+    }
+
+    if (width != sourceWidth || height != sourceHeight) {
+      sourceWidth = width;
+      sourceHeight = height;
+      targetHeight = getTargetHeight(targetWidth, width, height);
+
+      columnIndex = new int[width];
+      columnWeight = new float[width];
+      buildTable(width, targetWidth, columnIndex, columnWeight);
+      columnStart = new int[targetWidth + 1];
+      for (int x = width - 1; x >= 0; x--) {
+        columnStart[columnIndex[x]] = x;
+      }
+      columnStart[targetWidth] = width;
+      rowIndex = new int[height];
+      rowWeight = new float[height];
+      buildTable(height, targetHeight, rowIndex, rowWeight);
+
+      rowPixels = new int[width];
+      rowSums = new float[targetWidth + 1];
+      output = new float[targetWidth * targetHeight];
+    }
+
+    Arrays.fill(output, 0, targetWidth * targetHeight, 0f);
+  }
+
+  /**
+   * Maps every source pixel of one dimension to the output pixel(s) it overlaps. When shrinking, a
+   * source pixel overlaps at most two output pixels.
+   *
+   * @param sourceSize The number of source pixels
+   * @param targetSize The number of output pixels
+   * @param index The output pixel each source pixel starts in
+   * @param weight The part of each source pixel that falls into that output pixel
+   */
+  private static void buildTable(
+      final int sourceSize, final int targetSize, final int[] index, final float[] weight) {
+    // work in output units: source pixel i covers [i * scale, (i + 1) * scale)
+    final double scale = (double) targetSize / sourceSize;
+
+    for (int i = 0; i < sourceSize; i++) {
+      final double start = i * scale;
+      final double end = (i + 1) * scale;
+      final int first = Math.min((int) start, targetSize - 1);
+
+      index[i] = first;
+      if (end <= first + 1 || first == targetSize - 1) {
+        weight[i] = 1f;
+      } else {
+        weight[i] = (float) ((first + 1 - start) / scale);
+      }
+    }
+  }
+
+  /**
+   * Adds the luma of one source row to the output rows it overlaps. Luma is a weighted sum of the
+   * channels, so the channels of the pixels lying in a single output column are summed first and
+   * weighted once per column. Only the pixel on the border of two columns is split.
+   *
+   * @param pixels The ARGB pixels
+   * @param offset The index of the first pixel of the row
+   * @param y The source row
+   */
+  private void accumulateRow(final int[] pixels, final int offset, final int y) {
+    for (int column = 0; column < targetWidth; column++) {
+      final int last = columnStart[column + 1] - 1;
+
+      // black pixels add nothing, so the background needs no special case
+      int red = 0;
+      int green = 0;
+      int blue = 0;
+      for (int x = columnStart[column]; x < last; x++) {
+        final int pixel = pixels[offset + x];
+        red += (pixel >> 16) & 0xff;
+        green += (pixel >> 8) & 0xff;
+        blue += pixel & 0xff;
+      }
+
+      final float luma = luma(red, green, blue);
+      final float border = luma(pixels[offset + last]);
+      final float weight = columnWeight[last];
+      rowSums[column] += luma + border * weight;
+      if (weight < 1f) {
+        rowSums[column + 1] += border * (1f - weight);
+      }
+    }
+
+    // spread the row over the output rows it overlaps
+    final int top = rowIndex[y] * targetWidth;
+    final float topWeight = rowWeight[y];
+    final float bottomWeight = 1f - topWeight;
+
+    for (int i = 0; i < targetWidth; i++) {
+      final float value = rowSums[i];
+      if (value != 0f) {
+        output[top + i] += value * topWeight;
+        if (bottomWeight > 0f) {
+          output[top + targetWidth + i] += value * bottomWeight;
+        }
+        rowSums[i] = 0f;
+      }
+    }
+  }
+
+  private static float luma(final int red, final int green, final int blue) {
+    return 0.299f * red + 0.587f * green + 0.114f * blue;
+  }
+
+  private static float luma(final int pixel) {
+    return luma((pixel >> 16) & 0xff, (pixel >> 8) & 0xff, pixel & 0xff);
+  }
+
+  /**
+   * Turns the accumulated sums into averages.
+   *
+   * @return the output
+   */
+  private float[] normalise() {
+    // every output pixel covers the same source area, and the sums are in luma from 0 to 255
+    final float area = ((float) sourceWidth / targetWidth) * ((float) sourceHeight / targetHeight);
+    final float inverseArea = 1f / (area * 255f);
+
+    for (int i = 0; i < targetWidth * targetHeight; i++) {
+      output[i] = Math.min(1f, output[i] * inverseArea);
+    }
+
+    return output;
+  }
+}
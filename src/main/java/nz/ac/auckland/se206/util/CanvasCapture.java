@@ -0,0 +1,85 @@
+package nz.ac.auckland.se206.util;
+
+import java.nio.IntBuffer;
+import javafx.scene.SnapshotParameters;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.image.WritablePixelFormat;
+import javafx.scene.paint.Color;
+import javafx.scene.transform.Scale;
+
+/**
+ * Takes snapshots of a canvas at a fixed size, scaled by the snapshot itself instead of being
+ * resized afterwards. The snapshot image and the pixel buffer are created once and reused, so a
+ * capture does not allocate a full size image, nor convert it to AWT, every time.
+ *
+ * <p>The DL model reads the drawing from the stroke rasterizer by default. Start the game with
+ * -Dquickdraw.capture=snapshot to give it scaled snapshots of the canvas instead, e.g. to compare
+ * both paths.
+ *
+ * <p>Captures must be taken on the JavaFX thread. The returned pixels are overwritten by the next
+ * capture.
+ */
+public class CanvasCapture {
+
+  /** System property choosing the capture of the drawing given to the model. */
+  public static final String CAPTURE_PROPERTY = "quickdraw.capture";
+
+  private static final WritablePixelFormat<IntBuffer> FORMAT = PixelFormat.getIntArgbInstance();
+
+  /**
+   * Checks if the model should be given snapshots of the canvas instead of rasterized strokes.
+   *
+   * @return true if -Dquickdraw.capture=snapshot is set
+   */
+  public static boolean isSnapshotConfigured() {
+    return "snapshot".equalsIgnoreCase(System.getProperty(CAPTURE_PROPERTY));
+  }
+
+  private final Canvas canvas;
+  private final int width;
+  private final int height;
+  private final SnapshotParameters params = new SnapshotParameters();
+  private final WritableImage image;
+  private final int[] pixels;
+
+  /**
+   * Constructs a capture of a canvas at the given size, the canvas is stretched to fill it.
+   *
+   * @param canvas The canvas to capture
+   * @param width The width of the captured pixels
+   * @param height The height of the captured pixels
+   */
+  public CanvasCapture(final Canvas canvas, final int width, final int height) {
+    this.canvas = canvas;
+    this.width = width;
+    this.height = height;
+
+    // the cleared parts of the canvas are transparent, they are captured as the black background
+    params.setFill(Color.BLACK);
+    params.setTransform(new Scale(width / canvas.getWidth(), height / canvas.getHeight()));
+    image = new WritableImage(width, height);
+    pixels = new int[width * height];
+  }
+
+  /**
+   * Captures the canvas. This must be called on the JavaFX thread.
+   *
+   * @return the ARGB pixels row by row, which are overwritten by the next capture
+   */
+  public int[] capture() {
+    canvas.snapshot(params, image);
+    image.getPixelReader().getPixels(0, 0, width, height, FORMAT, pixels, 0, width);
+
+    return pixels;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+}
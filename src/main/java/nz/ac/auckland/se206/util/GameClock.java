@@ -0,0 +1,145 @@
+package nz.ac.auckland.se206.util;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * Times a game from the monotonic clock of {@link System#nanoTime()}, so that the remaining time
+ * and the time played are exact rather than read back from the countdown label. The clock has no
+ * thread of its own: it is checked with {@link #tick(long)} as often as the caller likes, and only
+ * calls its tick listeners when the remaining whole seconds change, so a label bound to it is
+ * updated once per second.
+ *
+ * <p>The prediction thread checks if the time has run out and stops the clock on a win while the
+ * JavaFX thread ticks it, so every method is synchronized. Times are taken with {@link
+ * System#nanoTime()}.
+ */
+public class GameClock {
+
+  private static final long SECOND_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final long durationNanos;
+  private final List<IntConsumer> tickListeners = new CopyOnWriteArrayList<>();
+
+  private long startNanos = -1;
+  private long stopNanos = -1;
+  private int lastRemainingSeconds = -1;
+
+  /**
+   * Constructs a stopped clock.
+   *
+   * @param seconds The time limit of the game in seconds
+   */
+  public GameClock(final int seconds) {
+    if (seconds < 0) {
+      throw new IllegalArgumentException("The time limit cannot be negative");
+    }
+
+    durationNanos = TimeUnit.SECONDS.toNanos(seconds);
+  }
+
+  /**
+   * Adds a listener called with the remaining seconds, rounded up, every time they change. It is
+   * called on the thread ticking the clock.
+   *
+   * @param listener The listener of the remaining seconds
+   */
+  public void addTickListener(final IntConsumer listener) {
+    tickListeners.add(listener);
+  }
+
+  /**
+   * Starts the countdown and calls the tick listeners with the full time limit.
+   *
+   * @param nowNanos The current time
+   */
+  public void start(final long nowNanos) {
+    synchronized (this) {
+      startNanos = nowNanos;
+      stopNanos = -1;
+      lastRemainingSeconds = -1;
+    }
+    tick(nowNanos);
+  }
+
+  /**
+   * Stops the countdown, e.g. when the game is won. The elapsed time stays the time at which the
+   * clock was stopped.
+   *
+   * @param nowNanos The current time
+   */
+  public synchronized void stop(final long nowNanos) {
+    if (isRunning()) {
+      stopNanos = Math.min(nowNanos, startNanos + durationNanos);
+    }
+  }
+
+  /**
+   * Calls the tick listeners if the remaining whole seconds changed since the last tick.
+   *
+   * @param nowNanos The current time
+   */
+  public void tick(final long nowNanos) {
+    final int remaining;
+    synchronized (this) {
+      remaining = getRemainingSeconds(nowNanos);
+      if (startNanos < 0 || remaining == lastRemainingSeconds) {
+        return;
+      }
+      lastRemainingSeconds = remaining;
+    }
+
+    for (final IntConsumer listener : tickListeners) {
+      listener.accept(remaining);
+    }
+  }
+
+  /**
+   * Checks if the clock was started and is neither stopped nor out of time. The time running out
+   * does not stop the clock by itself, see {@link #isExpired(long)}.
+   *
+   * @return true if the clock was started and not stopped
+   */
+  public synchronized boolean isRunning() {
+    return startNanos >= 0 && stopNanos < 0;
+  }
+
+  /**
+   * Checks if the time limit was reached before the clock was stopped.
+   *
+   * @param nowNanos The current time
+   * @return true if the time has run out
+   */
+  public synchronized boolean isExpired(final long nowNanos) {
+    return startNanos >= 0 && getElapsedNanos(nowNanos) >= durationNanos;
+  }
+
+  /**
+   * Returns the time since the start of the countdown, up to the time limit or to the time the
+   * clock was stopped.
+   *
+   * @param nowNanos The current time
+   * @return the elapsed time in nanoseconds, 0 if the clock was never started
+   */
+  public synchronized long getElapsedNanos(final long nowNanos) {
+    if (startNanos < 0) {
+      return 0;
+    }
+
+    final long end = stopNanos >= 0 ? stopNanos : nowNanos;
+    return Math.min(Math.max(0, end - startNanos), durationNanos);
+  }
+
+  /**
+   * Returns the remaining time in whole seconds, rounded up like a countdown shows it.
+   *
+   * @param nowNanos The current time
+   * @return the remaining seconds, 0 once the time has run out
+   */
+  public synchronized int getRemainingSeconds(final long nowNanos) {
+    final long remaining = durationNanos - getElapsedNanos(nowNanos);
+    return (int) ((remaining + SECOND_NANOS - 1) / SECOND_NANOS);
+  }
+}
@@ -29,6 +29,42 @@ public class ImageUtils {
     return image;
   }
 
+  // the grayscale value of every gray level, so that converting a pixel needs no float division
+  private static final float[] GRAY_VALUES = new float[256];
+
+  static {
+    for (int level = 0; level < GRAY_VALUES.length; level++) {
+      GRAY_VALUES[level] = level / 255f;
+    }
+  }
+
+  /**
+   * Converts an ARGB pixel into the grayscale value the doodle model was trained with, using the
+   * same luma weights as DJL's grayscale image conversion.
+   *
+   * @param argb The ARGB pixel.
+   * @return The grayscale value between 0 and 1.
+   */
+  public static float toGray(final int argb) {
+    return GRAY_VALUES[toGrayLevel(argb)];
+  }
+
+  /**
+   * Converts an ARGB pixel into a gray level, rounding 0.299 R + 0.587 G + 0.114 B to the nearest
+   * integer. This is integer arithmetic only, which is several times faster than rounding floats
+   * for the hundreds of thousands of pixels of a canvas.
+   *
+   * @param argb The ARGB pixel.
+   * @return The gray level between 0 and 255.
+   */
+  public static int toGrayLevel(final int argb) {
+    final int red = (argb >> 16) & 0xff;
+    final int green = (argb >> 8) & 0xff;
+    final int blue = argb & 0xff;
+
+    return (299 * red + 587 * green + 114 * blue + 500) / 1000;
+  }
+
   /**
    * Inverts the black and white pixels of an image. Other colours remain unchanged.
    *
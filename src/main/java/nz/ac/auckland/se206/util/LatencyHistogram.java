@@ -0,0 +1,136 @@
+package nz.ac.auckland.se206.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies in fixed buckets, so that percentiles can be read at any time while recording
+ * never allocates nor locks. Latencies are kept in microseconds: values below 16 µs have a bucket
+ * each, and every power of two above is split into 16 buckets, so a percentile is never more than
+ * about 6% above the real value. Latencies above about two minutes fall into the last bucket.
+ *
+ * <p>Recording and reading can happen on different threads at the same time. A reading taken while
+ * samples are recorded may miss some of them, which does not matter for a live display.
+ */
+public class LatencyHistogram {
+
+  // buckets per power of two, as a number of bits
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  // enough powers of two for 2^27 µs, about two minutes
+  private static final int BUCKETS = 24 * SUB_BUCKETS;
+
+  /**
+   * Finds the bucket of a latency.
+   *
+   * @param micros The latency in microseconds
+   * @return the index of the bucket
+   */
+  static int getBucket(final long micros) {
+    if (micros < SUB_BUCKETS) {
+      return (int) Math.max(0, micros);
+    }
+
+    // keep the highest bits of the value: the magnitude picks the power of two, the bits below it
+    // pick one of its sub buckets
+    final int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS;
+    final int bucket = (shift + 1) * SUB_BUCKETS + (int) (micros >> shift) - SUB_BUCKETS;
+
+    return Math.min(bucket, BUCKETS - 1);
+  }
+
+  /**
+   * Returns the highest latency of a bucket.
+   *
+   * @param bucket The index of the bucket
+   * @return the highest latency in microseconds that falls into the bucket
+   */
+  static long getUpperBound(final int bucket) {
+    if (bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    final int shift = bucket / SUB_BUCKETS - 1;
+    final long lower = (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+
+    return lower + (1L << shift) - 1;
+  }
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+  /**
+   * Records one latency.
+   *
+   * @param nanos The latency in nanoseconds
+   */
+  public void record(final long nanos) {
+    counts.incrementAndGet(getBucket(nanos / 1000));
+  }
+
+  /**
+   * Records the time elapsed since a start time taken with {@link System#nanoTime()}.
+   *
+   * @param startNanos The start time
+   */
+  public void recordSince(final long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Adds every latency recorded by another histogram to this one.
+   *
+   * @param other The histogram to add
+   */
+  public void add(final LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.addAndGet(i, other.counts.get(i));
+    }
+  }
+
+  /**
+   * Returns the number of latencies recorded since the last reset.
+   *
+   * @return the number of latencies
+   */
+  public long getCount() {
+    long count = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      count += counts.get(i);
+    }
+
+    return count;
+  }
+
+  /**
+   * Returns a percentile of the latencies recorded since the last reset, rounded up to the highest
+   * latency of its bucket.
+   *
+   * @param percentile The percentile between 0 and 100, e.g. 95 for the p95
+   * @return the latency in microseconds, or -1 if nothing was recorded
+   */
+  public long getPercentile(final double percentile) {
+    final long count = getCount();
+    if (count == 0) {
+      return -1;
+    }
+
+    // the rank of the sample at the percentile, starting at 1
+    final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        return getUpperBound(i);
+      }
+    }
+
+    // samples recorded while counting moved the rank past the end
+    return getUpperBound(BUCKETS - 1);
+  }
+
+  /** Forgets every latency recorded so far. */
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      counts.set(i, 0);
+    }
+  }
+}
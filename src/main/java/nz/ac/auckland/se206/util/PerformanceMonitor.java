@@ -0,0 +1,184 @@
+package nz.ac.auckland.se206.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import javafx.animation.AnimationTimer;
+
+/**
+ * Keeps the latency histograms of the stages of a prediction tick and of the JavaFX pulses, and
+ * formats them with the memory of the process for the performance HUD of the canvas. Recording a
+ * stage only reads the clock and increments a counter, so the prediction path can always be
+ * measured; the pulses are only measured while the HUD is shown.
+ *
+ * <p>The HUD is hidden by default and can be shown from the game settings, with F3 during a game,
+ * or from the start with -Dquickdraw.hud=true. Showing it resets the histograms, so that it
+ * describes what happens while staff are looking at it.
+ */
+public class PerformanceMonitor {
+
+  public static final String HUD_PROPERTY = "quickdraw.hud";
+
+  /** The measured latencies, the stages in the order of a prediction tick. */
+  public enum Metric {
+    RASTERIZE("rasterize"),
+    SNAPSHOT("snapshot"),
+    PREPROCESS("preprocess"),
+    INFERENCE("inference"),
+    UI_UPDATE("ui update"),
+    FX_PULSE("fx pulse");
+
+    private final String label;
+
+    Metric(final String label) {
+      this.label = label;
+    }
+
+    public String getLabel() {
+      return label;
+    }
+  }
+
+  private static final LatencyHistogram[] histograms = new LatencyHistogram[Metric.values().length];
+
+  static {
+    for (int i = 0; i < histograms.length; i++) {
+      histograms[i] = new LatencyHistogram();
+    }
+  }
+
+  private static boolean hudVisible = Boolean.getBoolean(HUD_PROPERTY);
+  private static AnimationTimer pulseTimer;
+
+  /**
+   * Records the time a stage took.
+   *
+   * @param metric The measured stage
+   * @param startNanos The start of the stage, taken with {@link System#nanoTime()}
+   * @return the end of the stage, to be used as the start of the next one
+   */
+  public static long record(final Metric metric, final long startNanos) {
+    final long now = System.nanoTime();
+    histograms[metric.ordinal()].record(now - startNanos);
+
+    return now;
+  }
+
+  public static LatencyHistogram getHistogram(final Metric metric) {
+    return histograms[metric.ordinal()];
+  }
+
+  public static boolean isHudVisible() {
+    return hudVisible;
+  }
+
+  /**
+   * Shows or hides the HUD, starting or stopping the measure of the pulses. This must be called on
+   * the JavaFX thread.
+   *
+   * @param visible true to show the HUD
+   */
+  public static void setHudVisible(final boolean visible) {
+    if (visible && !hudVisible) {
+      for (final LatencyHistogram histogram : histograms) {
+        histogram.reset();
+      }
+    }
+    hudVisible = visible;
+
+    if (pulseTimer == null) {
+      pulseTimer =
+          new AnimationTimer() {
+            private long lastPulse = -1;
+
+            @Override
+            public void handle(final long now) {
+              // the time between two pulses, a slow frame or a blocked JavaFX thread shows here
+              if (lastPulse >= 0) {
+                record(Metric.FX_PULSE, lastPulse);
+              }
+              lastPulse = now;
+            }
+
+            @Override
+            public void stop() {
+              super.stop();
+              lastPulse = -1;
+            }
+          };
+    }
+
+    if (visible) {
+      pulseTimer.start();
+    } else {
+      pulseTimer.stop();
+    }
+  }
+
+  /**
+   * Formats the percentiles of every stage and the memory of the process, one line each.
+   *
+   * @return the text of the HUD
+   */
+  public static String getReport() {
+    final StringBuilder report = new StringBuilder();
+    report.append(String.format("%-11s%8s%8s%8s%7s%n", "ms", "p50", "p95", "p99", "n"));
+
+    for (final Metric metric : Metric.values()) {
+      final LatencyHistogram histogram = getHistogram(metric);
+      report.append(
+          String.format(
+              "%-11s%8s%8s%8s%7d%n",
+              metric.getLabel(),
+              formatMillis(histogram.getPercentile(50)),
+              formatMillis(histogram.getPercentile(95)),
+              formatMillis(histogram.getPercentile(99)),
+              histogram.getCount()));
+    }
+
+    // the background threads of the application, a growing queue shows work piling up
+    report.append(AppExecutors.getReport());
+
+    final Runtime runtime = Runtime.getRuntime();
+    final long heapUsed = runtime.totalMemory() - runtime.freeMemory();
+    final long resident = readStatusKilobytes("VmRSS:");
+    report.append(
+        String.format(
+            "heap %d/%d MB  rss %s",
+            heapUsed >> 20,
+            runtime.maxMemory() >> 20,
+            resident < 0 ? "n/a" : (resident >> 10) + " MB"));
+
+    return report.toString();
+  }
+
+  /**
+   * Reads a memory counter of the process from /proc/self/status. The resident memory includes the
+   * native memory of the inference engine, which the heap does not show.
+   *
+   * @param key The counter, e.g. VmRSS: for the resident memory
+   * @return the value in kilobytes, or -1 if it is not available on this system
+   */
+  public static long readStatusKilobytes(final String key) {
+    final Path status = Paths.get("/proc/self/status");
+    if (!Files.isReadable(status)) {
+      return -1;
+    }
+
+    try {
+      for (final String line : Files.readAllLines(status)) {
+        if (line.startsWith(key)) {
+          return Long.parseLong(line.substring(key.length()).replace("kB", "").trim());
+        }
+      }
+    } catch (IOException | NumberFormatException e) {
+      e.printStackTrace();
+    }
+    return -1;
+  }
+
+  private static String formatMillis(final long micros) {
+    return micros < 0 ? "-" : String.format("%.1f", micros / 1000.0);
+  }
+}
@@ -0,0 +1,185 @@
+package nz.ac.auckland.se206.words;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The categories of the game and their difficulty, read once from category_difficulty.csv and
+ * shared by every game. Each category has an id: the easy categories come first, then the medium
+ * and the hard ones, each in the order of the file. Every words setting picks a run of consecutive
+ * ids, so its categories are a read-only view of a single list and nothing is copied when a game
+ * picks its word.
+ *
+ * <p>The index is immutable, it can be read from any thread.
+ */
+public final class CategoryIndex {
+
+  // difficulty is represented by these letters in the csv file
+  public enum Difficulty {
+    E,
+    M,
+    H
+  }
+
+  private static final String FILE = "/category_difficulty.csv";
+
+  private static CategoryIndex instance;
+
+  /**
+   * Returns the categories of the game, reading the file on the first call.
+   *
+   * @return the shared category index
+   * @throws IOException If errors occur when reading the csv file
+   * @throws CsvException If error occurs in the opencsv
+   */
+  public static synchronized CategoryIndex getInstance() throws IOException, CsvException {
+    if (instance == null) {
+      try (InputStream in = CategoryIndex.class.getResourceAsStream(FILE)) {
+        if (in == null) {
+          throw new IOException(FILE + " is not on the classpath");
+        }
+
+        try (CSVReader reader = new CSVReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+          instance = new CategoryIndex(reader.readAll());
+        }
+      }
+    }
+
+    return instance;
+  }
+
+  private final List<String> categories;
+  private final Difficulty[] difficulties;
+  private final Map<String, Integer> ids = new HashMap<>();
+  // the first ids of the medium and of the hard categories
+  private final int mediumStart;
+  private final int hardStart;
+  // the categories of each words setting, built once
+  private final List<List<String>> views = new ArrayList<>();
+
+  /**
+   * Builds the index from the lines of the csv file.
+   *
+   * @param lines The category and the difficulty letter of each line
+   */
+  CategoryIndex(final List<String[]> lines) {
+    final List<List<String>> byDifficulty = new ArrayList<>();
+    for (int i = 0; i < Difficulty.values().length; i++) {
+      byDifficulty.add(new ArrayList<>());
+    }
+
+    for (final String[] line : lines) {
+      // the file starts with a byte order mark, which is not part of the first category
+      final String category = line[0].replace("\uFEFF", "").trim().intern();
+      final Difficulty difficulty = Difficulty.valueOf(line[1].trim());
+      byDifficulty.get(difficulty.ordinal()).add(category);
+    }
+
+    final List<String> all = new ArrayList<>(lines.size());
+    for (final List<String> names : byDifficulty) {
+      all.addAll(names);
+    }
+    categories = Collections.unmodifiableList(all);
+    mediumStart = byDifficulty.get(Difficulty.E.ordinal()).size();
+    hardStart = mediumStart + byDifficulty.get(Difficulty.M.ordinal()).size();
+
+    difficulties = new Difficulty[all.size()];
+    for (int id = 0; id < all.size(); id++) {
+      ids.put(all.get(id), id);
+      difficulties[id] =
+          id < mediumStart ? Difficulty.E : id < hardStart ? Difficulty.M : Difficulty.H;
+    }
+
+    for (int wordsSettings = 0; wordsSettings <= 3; wordsSettings++) {
+      views.add(categories.subList(getStart(wordsSettings), getEnd(wordsSettings)));
+    }
+  }
+
+  /**
+   * Returns the number of categories.
+   *
+   * @return the number of categories, which are the ids from 0 to this number excluded
+   */
+  public int size() {
+    return categories.size();
+  }
+
+  /**
+   * Finds the id of a category.
+   *
+   * @param category The name of the category
+   * @return the id of the category, or -1 if there is no such category
+   */
+  public int getId(final String category) {
+    final Integer id = ids.get(category);
+    return id == null ? -1 : id;
+  }
+
+  public String getCategory(final int id) {
+    return categories.get(id);
+  }
+
+  public Difficulty getDifficulty(final int id) {
+    return difficulties[id];
+  }
+
+  /**
+   * Returns the first id of the categories of a words setting.
+   *
+   * @param wordsSettings The words setting of the game: 3 for easy, 2 for easy and medium, 1 for
+   *     all the categories, 0 for the hard (master) ones
+   * @return the first id of the categories of the setting
+   */
+  public int getStart(final int wordsSettings) {
+    // like the words settings, anything else than 3, 2 or 1 is the master setting
+    return wordsSettings >= 1 && wordsSettings <= 3 ? 0 : hardStart;
+  }
+
+  /**
+   * Returns the end of the ids of a words setting.
+   *
+   * @param wordsSettings The words setting of the game
+   * @return the id after the last category of the setting
+   */
+  public int getEnd(final int wordsSettings) {
+    if (wordsSettings == 3) {
+      return mediumStart;
+    } else if (wordsSettings == 2) {
+      return hardStart;
+    }
+    return categories.size();
+  }
+
+  /**
+   * Returns the categories of a words setting, ordered by id. The list is a read-only view, it is
+   * not copied.
+   *
+   * @param wordsSettings The words setting of the game
+   * @return the categories the setting picks from
+   */
+  public List<String> getCategories(final int wordsSettings) {
+    return views.get(wordsSettings < 0 || wordsSettings > 3 ? 0 : wordsSettings);
+  }
+
+  /**
+   * Picks a random category of a words setting.
+   *
+   * @param wordsSettings The words setting of the game
+   * @return a category of the setting
+   */
+  public String getRandomCategory(final int wordsSettings) {
+    final int start = getStart(wordsSettings);
+    return categories.get(
+        start + ThreadLocalRandom.current().nextInt(getEnd(wordsSettings) - start));
+  }
+}
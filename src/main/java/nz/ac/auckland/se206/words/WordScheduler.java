@@ -0,0 +1,213 @@
+package nz.ac.auckland.se206.words;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ThreadLocalRandom;
+import nz.ac.auckland.se206.words.CategoryIndex.Difficulty;
+
+/**
+ * Picks the words a player has not played yet, without retrying random words until an unplayed one
+ * comes up. The played words are a bitset over the category ids, and the ids of each difficulty are
+ * a deck whose unplayed ids are kept at its front: playing a word swaps it behind them. Drawing a
+ * word, playing it and checking if every word of a setting was played are constant time however
+ * many words were played.
+ *
+ * <p>A scheduler is built from the played words of a profile and kept in step with them by the
+ * profile, the played words themselves are what is saved. It is only used by the JavaFX thread and
+ * is not thread safe.
+ */
+public class WordScheduler {
+
+  private final CategoryIndex index;
+  private final BitSet played;
+  // the ids of each difficulty are deck[start[d]] to deck[end[d] - 1], unplayed ones first
+  private final int[] deck;
+  private final int[] position;
+  private final int[] start;
+  private final int[] end;
+  private final int[] unplayed;
+
+  /**
+   * Constructs a scheduler for the played words of a profile.
+   *
+   * @param index The categories of the game
+   * @param playedWords The words already played, the ones that are not categories are ignored
+   */
+  public WordScheduler(final CategoryIndex index, final Collection<String> playedWords) {
+    this.index = index;
+    played = new BitSet(index.size());
+    deck = new int[index.size()];
+    position = new int[index.size()];
+
+    final int difficulties = Difficulty.values().length;
+    start = new int[difficulties];
+    end = new int[difficulties];
+    unplayed = new int[difficulties];
+    // the ids are ordered by difficulty, so each difficulty is a run of ids
+    for (int id = index.size() - 1; id >= 0; id--) {
+      start[index.getDifficulty(id).ordinal()] = id;
+    }
+    for (int id = 0; id < index.size(); id++) {
+      end[index.getDifficulty(id).ordinal()] = id + 1;
+    }
+
+    reset();
+    for (final String word : playedWords) {
+      markPlayed(word);
+    }
+  }
+
+  /** Forgets the played words, e.g. when the player starts a new round of words. */
+  public void reset() {
+    played.clear();
+    for (int id = 0; id < deck.length; id++) {
+      deck[id] = id;
+      position[id] = id;
+    }
+    for (int d = 0; d < unplayed.length; d++) {
+      unplayed[d] = Math.max(0, end[d] - start[d]);
+    }
+  }
+
+  /**
+   * Marks a word as played, it is not drawn again until the scheduler is reset.
+   *
+   * @param word The word that was played
+   */
+  public void markPlayed(final String word) {
+    final int id = index.getId(word);
+    if (id < 0 || played.get(id)) {
+      return;
+    }
+
+    moveBehindUnplayed(id, index.getDifficulty(id).ordinal());
+    played.set(id);
+  }
+
+  /**
+   * Swaps an unplayed id with the last unplayed id of its difficulty, then counts one unplayed id
+   * less.
+   *
+   * @param id The id to move
+   * @param d The ordinal of the difficulty of the id
+   */
+  private void moveBehindUnplayed(final int id, final int d) {
+    final int last = start[d] + unplayed[d] - 1;
+    final int other = deck[last];
+    deck[position[id]] = other;
+    position[other] = position[id];
+    deck[last] = id;
+    position[id] = last;
+
+    unplayed[d]--;
+  }
+
+  /**
+   * Checks if a word was played.
+   *
+   * @param word The word to check
+   * @return true if the word is a category that was played
+   */
+  public boolean isPlayed(final String word) {
+    final int id = index.getId(word);
+    return id >= 0 && played.get(id);
+  }
+
+  /**
+   * Checks if every word of a words setting was played.
+   *
+   * @param wordsSettings The words setting of the game
+   * @return true if there is no word of the setting left to draw
+   */
+  public boolean isAllPlayed(final int wordsSettings) {
+    return getUnplayedCount(wordsSettings) == 0;
+  }
+
+  /**
+   * Counts the words of a words setting that were not played.
+   *
+   * @param wordsSettings The words setting of the game
+   * @return the number of words of the setting left to draw
+   */
+  public int getUnplayedCount(final int wordsSettings) {
+    int count = 0;
+    for (int d = getFirstDifficulty(wordsSettings); d <= getLastDifficulty(wordsSettings); d++) {
+      count += unplayed[d];
+    }
+
+    return count;
+  }
+
+  /**
+   * Draws a random word of a words setting that was not played. The word is not marked as played.
+   *
+   * @param wordsSettings The words setting of the game
+   * @return a word of the setting that was not played
+   * @throws IllegalStateException If every word of the setting was played
+   */
+  public String next(final int wordsSettings) {
+    final String word = next(wordsSettings, Collections.emptySet());
+    if (word == null) {
+      throw new IllegalStateException("Every word of the setting was played");
+    }
+
+    return word;
+  }
+
+  /**
+   * Draws a random word of a words setting that was neither played nor excluded, e.g. because it
+   * cannot be used by this game. The word is not marked as played.
+   *
+   * @param wordsSettings The words setting of the game
+   * @param excluded The words that must not be drawn
+   * @return a word of the setting that was not played, or null if every such word is excluded
+   */
+  public String next(final int wordsSettings, final Collection<String> excluded) {
+    // the excluded words are moved behind the unplayed ones of their difficulty for the draw
+    final int first = getFirstDifficulty(wordsSettings);
+    final int last = getLastDifficulty(wordsSettings);
+    final int[] hidden = new int[unplayed.length];
+    for (final String word : excluded) {
+      final int id = index.getId(word);
+      if (id >= 0 && !played.get(id)) {
+        final int d = index.getDifficulty(id).ordinal();
+        if (position[id] < start[d] + unplayed[d]) {
+          moveBehindUnplayed(id, d);
+          hidden[d]++;
+        }
+      }
+    }
+
+    int draw = 0;
+    for (int d = first; d <= last; d++) {
+      draw += unplayed[d];
+    }
+
+    String word = null;
+    if (draw > 0) {
+      draw = ThreadLocalRandom.current().nextInt(draw);
+      int d = first;
+      while (draw >= unplayed[d]) {
+        draw -= unplayed[d];
+        d++;
+      }
+      word = index.getCategory(deck[start[d] + draw]);
+    }
+
+    // the excluded words are unplayed again, right behind the others
+    for (int d = 0; d < unplayed.length; d++) {
+      unplayed[d] += hidden[d];
+    }
+
+    return word;
+  }
+
+  private int getFirstDifficulty(final int wordsSettings) {
+    return index.getDifficulty(index.getStart(wordsSettings)).ordinal();
+  }
+
+  private int getLastDifficulty(final int wordsSettings) {
+    return index.getDifficulty(index.getEnd(wordsSettings) - 1).ordinal();
+  }
+}
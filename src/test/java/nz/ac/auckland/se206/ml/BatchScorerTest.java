@@ -0,0 +1,256 @@
+package nz.ac.auckland.se206.ml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ai.djl.modality.Classifications.Classification;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchScorerTest {
+
+  private static final ClassTable classes = new ClassTable(List.of("apple", "hot_dog", "sun"));
+
+  /** Keeps the rows of the report by file, the error ones as their error. */
+  private static final class FakeReport implements BatchScorer.Report {
+    private final Map<Path, String> rows = new ConcurrentHashMap<>();
+
+    @Override
+    public void write(final Path file, final List<Classification> predictions) {
+      rows.put(file, predictions.get(0).getClassName());
+    }
+
+    @Override
+    public void writeError(final Path file, final String error) {
+      rows.put(file, "error: " + error);
+    }
+
+    @Override
+    public void flush() {}
+
+    @Override
+    public void close() {}
+  }
+
+  @TempDir Path directory;
+
+  @Test
+  void testParseOptions() {
+    final BatchScorer.Options defaults = BatchScorer.Options.parse(new String[] {"saved", "3"});
+    assertEquals("saved", defaults.getPattern());
+    assertEquals(3, defaults.getK());
+    assertEquals("csv", defaults.getFormat());
+    assertNull(defaults.getOutput());
+    assertEquals(DoodlePrediction.DEFAULT_BATCH_SIZE, defaults.getBatchSize());
+
+    final BatchScorer.Options options =
+        BatchScorer.Options.parse(
+            new String[] {
+              "saved/*.bmp",
+              "5",
+              "--format",
+              "JSONL",
+              "--output",
+              "out.jsonl",
+              "--batch",
+              "8",
+              "--threads",
+              "2"
+            });
+    assertEquals("jsonl", options.getFormat());
+    assertEquals(Path.of("out.jsonl"), options.getOutput());
+    assertEquals(8, options.getBatchSize());
+    assertEquals(2, options.getThreads());
+
+    assertThrows(IllegalArgumentException.class, () -> BatchScorer.Options.parse(new String[] {}));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> BatchScorer.Options.parse(new String[] {"saved", "3", "--batch"}));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> BatchScorer.Options.parse(new String[] {"saved", "3", "--size", "2"}));
+    assertThrows(
+        NumberFormatException.class,
+        () -> BatchScorer.Options.parse(new String[] {"saved", "three"}));
+  }
+
+  @Test
+  void testFindImagesOfDirectory() throws IOException {
+    createFile("b.png");
+    createFile("a.bmp");
+    createFile("notes.txt");
+    createFile("sub/c.JPG");
+
+    assertEquals(
+        List.of(
+            directory.resolve("a.bmp"), directory.resolve("b.png"), directory.resolve("sub/c.JPG")),
+        BatchScorer.findImages(directory.toString()));
+    assertEquals(
+        List.of(directory.resolve("b.png")),
+        BatchScorer.findImages(directory.resolve("b.png").toString()));
+  }
+
+  @Test
+  void testFindImagesOfGlob() throws IOException {
+    createFile("saved/a.bmp");
+    createFile("saved/b.png");
+    createFile("saved/old/c.bmp");
+    createFile("other/d.bmp");
+
+    // an absolute glob is searched below its directories before the first wildcard
+    assertEquals(
+        List.of(directory.resolve("saved/a.bmp")),
+        BatchScorer.findImages(directory + "/saved/*.bmp"));
+    assertEquals(
+        List.of(directory.resolve("saved/a.bmp"), directory.resolve("saved/old/c.bmp")),
+        BatchScorer.findImages(directory + "/saved/**.bmp"));
+
+    // a relative glob is matched against the paths from the working directory
+    final Path working = directory.resolve(".");
+    assertEquals(
+        List.of(directory.resolve("saved/a.bmp"), directory.resolve("saved/old/c.bmp")),
+        BatchScorer.findImages(working, "saved/**.bmp"));
+    assertEquals(
+        List.of(directory.resolve("other/d.bmp"), directory.resolve("saved/a.bmp")),
+        BatchScorer.findImages(working, "*/*.bmp"));
+    assertEquals(List.of(), BatchScorer.findImages(working, "*.bmp"));
+  }
+
+  @Test
+  void testScoreReportsEveryImage() throws Exception {
+    final List<Path> images = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      images.add(createImage("drawing" + i + ".png"));
+    }
+    images.add(createFile("broken.png"));
+
+    final AtomicInteger batches = new AtomicInteger();
+    final BatchScorer scorer =
+        new BatchScorer(
+            inputs -> {
+              batches.incrementAndGet();
+              assertTrue(inputs.size() <= 2);
+              final List<PredictionFrame> frames = new ArrayList<>();
+              for (int i = 0; i < inputs.size(); i++) {
+                frames.add(new PredictionFrame(classes, new float[] {0.2f, 0.7f, 0.1f}));
+              }
+              return frames;
+            },
+            1,
+            2,
+            2);
+    final FakeReport report = new FakeReport();
+
+    final BatchScorer.Summary summary = scorer.score(images, report);
+
+    assertEquals(5, summary.getScored());
+    assertEquals(1, summary.getFailed());
+    assertTrue(batches.get() >= 3);
+    assertEquals(6, report.rows.size());
+    assertEquals("hot_dog", report.rows.get(images.get(0)));
+    assertEquals(
+        "error: unsupported image format", report.rows.get(directory.resolve("broken.png")));
+  }
+
+  @Test
+  void testFailedImagesGiveBackTheirPermits() throws IOException {
+    // far more broken images than decoded images may wait for the model
+    final List<Path> images = new ArrayList<>();
+    for (int i = 0; i < 50; i++) {
+      images.add(createFile("broken" + i + ".png"));
+    }
+
+    final BatchScorer scorer =
+        new BatchScorer(
+            inputs -> {
+              throw new AssertionError("No image can be scored");
+            },
+            1,
+            1,
+            1);
+    final FakeReport report = new FakeReport();
+
+    final BatchScorer.Summary summary =
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> scorer.score(images, report));
+
+    assertEquals(0, summary.getScored());
+    assertEquals(50, summary.getFailed());
+    assertEquals(50, report.rows.size());
+  }
+
+  @Test
+  void testCsvReport() throws IOException {
+    final StringWriter out = new StringWriter();
+    try (BatchScorer.Report report = BatchScorer.createReport("csv", out, 2)) {
+      report.write(Path.of("a.png"), topK(2));
+      report.writeError(Path.of("b, c.png"), "unsupported image format");
+    }
+
+    assertEquals(
+        "file,error,category1,probability1,category2,probability2\n"
+            + "a.png,,hot_dog,0.700000,apple,0.200000\n"
+            + "\"b, c.png\",unsupported image format,,,,\n",
+        out.toString());
+  }
+
+  @Test
+  void testJsonLinesReport() throws IOException {
+    final StringWriter out = new StringWriter();
+    try (BatchScorer.Report report = BatchScorer.createReport("jsonl", out, 2)) {
+      report.write(Path.of("a.png"), topK(2));
+      report.writeError(Path.of("b.png"), "unsupported image format");
+    }
+
+    final String[] lines = out.toString().split("\n");
+    assertEquals(2, lines.length);
+
+    final JSONObject scored = new JSONObject(lines[0]);
+    assertEquals("a.png", scored.getString("file"));
+    assertEquals(
+        "hot_dog", scored.getJSONArray("predictions").getJSONObject(0).getString("category"));
+    assertEquals(
+        0.7, scored.getJSONArray("predictions").getJSONObject(0).getDouble("probability"), 1e-6);
+
+    final JSONObject error = new JSONObject(lines[1]);
+    assertEquals("b.png", error.getString("file"));
+    assertEquals("unsupported image format", error.getString("error"));
+    assertTrue(!error.has("predictions"));
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> BatchScorer.createReport("xml", new StringWriter(), 2));
+  }
+
+  private static List<Classification> topK(final int k) {
+    return new PredictionFrame(classes, new float[] {0.2f, 0.7f, 0.1f}).getTopK(k);
+  }
+
+  private Path createFile(final String name) throws IOException {
+    final Path file = directory.resolve(name);
+    Files.createDirectories(file.getParent());
+    return Files.write(file, Collections.singletonList("not an image"));
+  }
+
+  private Path createImage(final String name) throws IOException {
+    final Path file = directory.resolve(name);
+    ImageIO.write(new BufferedImage(130, 96, BufferedImage.TYPE_INT_RGB), "png", file.toFile());
+    return file;
+  }
+}
@@ -1,12 +1,24 @@
 package nz.ac.auckland.se206.ml;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import ai.djl.ModelException;
+import ai.djl.modality.Classifications.Classification;
 import ai.djl.translate.TranslateException;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+import org.imgscalr.Scalr;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class DoodlePredictionTest {
   @Test
@@ -24,4 +36,57 @@ class DoodlePredictionTest {
       assertEquals(expected, actual);
     }
   }
+
+  @Test
+  void testBatchPredictions() throws ModelException, IOException, TranslateException {
+    final DoodlePrediction model = new DoodlePrediction();
+    final File folder = new File(System.getProperty("user.dir") + "/src/test/resources/images");
+    final List<File> images = Arrays.asList(folder.listFiles());
+
+    // a batch size smaller than the number of images forces more than one batch
+    final List<List<Classification>> batchPredictions =
+        model.getBatchPredictionsFromFiles(images, 1, 2);
+
+    assertEquals(images.size(), batchPredictions.size());
+    for (int i = 0; i < images.size(); i++) {
+      final String expected = model.getPredictions(images.get(i), 1).get(0).getClassName();
+
+      assertEquals(expected, batchPredictions.get(i).get(0).getClassName());
+    }
+  }
+
+  @Test
+  void testBatchPredictionsOfUnreadableFile(@TempDir final Path directory)
+      throws ModelException, IOException {
+    final DoodlePrediction model = new DoodlePrediction();
+    final File folder = new File(System.getProperty("user.dir") + "/src/test/resources/images");
+    final List<File> images = new ArrayList<>(Arrays.asList(folder.listFiles()));
+    final File broken = Files.writeString(directory.resolve("broken.bmp"), "not an image").toFile();
+    images.add(broken);
+
+    final IOException e =
+        assertThrows(IOException.class, () -> model.getBatchPredictionsFromFiles(images, 1, 2));
+    assertTrue(e.getMessage().contains(broken.getAbsolutePath()));
+    assertThrows(
+        IllegalArgumentException.class, () -> model.getBatchPredictionsFromFiles(images, 1, 0));
+  }
+
+  @Test
+  void testSameTopPredictionAsScalr() throws ModelException, IOException, TranslateException {
+    final DoodlePrediction model = new DoodlePrediction();
+    final File folder = new File(System.getProperty("user.dir") + "/src/test/resources/images");
+
+    for (final File img : folder.listFiles()) {
+      final BufferedImage image = ImageIO.read(img);
+      // the resizing used before the area downsampler
+      final BufferedImage resized =
+          Scalr.resize(
+              image, Scalr.Method.SPEED, Scalr.Mode.FIT_TO_WIDTH, 65, 65, Scalr.OP_ANTIALIAS);
+
+      final String expected =
+          model.getPredictionFrame(DoodleInput.fromImage(resized)).getTopK(1).get(0).getClassName();
+
+      assertEquals(expected, model.getPredictions(image, 1).get(0).getClassName(), img.getName());
+    }
+  }
 }
@@ -0,0 +1,52 @@
+package nz.ac.auckland.se206.ml;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class InferenceSchedulerTest {
+
+  private static final long MS = 1_000_000;
+
+  @Test
+  void testStrokeEndIsDebounced() {
+    final InferenceScheduler scheduler = new InferenceScheduler(100, 300, 1000, 0);
+
+    scheduler.onStroke(50 * MS);
+    scheduler.onStrokeEnd(80 * MS);
+    assertFalse(scheduler.isDue(150 * MS));
+    assertTrue(scheduler.isDue(180 * MS));
+
+    // a new stroke within the debounce time coalesces with the previous one
+    scheduler.onStroke(170 * MS);
+    scheduler.onStrokeEnd(200 * MS);
+    assertFalse(scheduler.isDue(250 * MS));
+    assertTrue(scheduler.isDue(300 * MS));
+  }
+
+  @Test
+  void testPauseInStroke() {
+    final InferenceScheduler scheduler = new InferenceScheduler(100, 300, 1000, 0);
+
+    scheduler.onStroke(100 * MS);
+    assertFalse(scheduler.isDue(300 * MS));
+    assertTrue(scheduler.isDue(400 * MS));
+  }
+
+  @Test
+  void testMaxIntervalWhileDrawing() {
+    final InferenceScheduler scheduler = new InferenceScheduler(100, 300, 1000, 0);
+    scheduler.onPredicted(0);
+
+    for (long time = 0; time < 1000 * MS; time += 50 * MS) {
+      scheduler.onStroke(time);
+      assertFalse(scheduler.isDue(time));
+    }
+    scheduler.onStroke(1000 * MS);
+    assertTrue(scheduler.isDue(1000 * MS));
+
+    scheduler.onPredicted(1000 * MS);
+    assertFalse(scheduler.isDue(1000 * MS));
+  }
+}
@@ -0,0 +1,87 @@
+package nz.ac.auckland.se206.ml;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import ai.djl.modality.Classifications;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class PredictionFrameTest {
+
+  private static final ClassTable classes =
+      new ClassTable(List.of("apple", "hot_dog", "tree", "teddy-bear", "sun"));
+
+  @Test
+  void testRank() {
+    final PredictionFrame frame =
+        new PredictionFrame(classes, new float[] {0.1f, 0.4f, 0.2f, 0.05f, 0.25f});
+
+    assertEquals(0, frame.getRank("hot dog"));
+    assertEquals(1, frame.getRank("sun"));
+    assertEquals(4, frame.getRank("teddy-bear"));
+    assertEquals(-1, frame.getRank("hot_dog"));
+    assertEquals(-1, frame.getRank("car"));
+    assertEquals(0.4f, frame.getProbability("hot dog"), 1e-6);
+  }
+
+  @Test
+  void testTopK() {
+    final PredictionFrame frame =
+        new PredictionFrame(classes, new float[] {0.1f, 0.4f, 0.2f, 0.05f, 0.25f});
+
+    assertArrayEquals(new int[] {1, 4, 2}, frame.getTopIds(3));
+    assertArrayEquals(new int[] {1, 4, 2, 0, 3}, frame.getTopIds(10));
+    assertEquals("hot_dog", frame.getTopK(1).get(0).getClassName());
+    assertEquals(
+        List.of(
+            "hot dog" + nl() + nl() + "sun" + nl() + nl(),
+            "tree" + nl() + nl() + "apple" + nl() + nl()),
+        frame.getPredictionString(4, 2));
+  }
+
+  @Test
+  void testWin() {
+    final PredictionFrame frame =
+        new PredictionFrame(classes, new float[] {0.1f, 0.4f, 0.2f, 0.05f, 0.25f});
+
+    assertTrue(frame.isWin("sun", 2, 25));
+    assertFalse(frame.isWin("sun", 1, 25));
+    assertFalse(frame.isWin("sun", 2, 30));
+    assertTrue(frame.isInTopK("tree", 3));
+    assertFalse(frame.isInTopK("tree", 2));
+  }
+
+  @Test
+  void testSameRankingAsClassifications() {
+    final List<String> names = new ArrayList<>();
+    final List<Double> probabilities = new ArrayList<>();
+    final float[] values = new float[345];
+    final Random random = new Random(206);
+    for (int i = 0; i < values.length; i++) {
+      names.add("class_" + i);
+      // a few ties, like the saturated probabilities of the model
+      values[i] = random.nextInt(100) / 100f;
+      probabilities.add((double) values[i]);
+    }
+
+    final PredictionFrame frame = new PredictionFrame(new ClassTable(names), values);
+    final List<Classifications.Classification> sorted =
+        new Classifications(names, probabilities).topK(values.length);
+
+    final int[] top = frame.getTopIds(values.length);
+    for (int rank = 0; rank < values.length; rank++) {
+      // ties may be ordered differently, but never the probabilities
+      assertEquals(sorted.get(rank).getProbability(), values[top[rank]], 1e-6);
+      assertEquals(rank, frame.getRank(top[rank]));
+    }
+  }
+
+  private static String nl() {
+    return System.lineSeparator();
+  }
+}
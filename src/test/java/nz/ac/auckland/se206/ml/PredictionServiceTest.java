@@ -0,0 +1,100 @@
+package nz.ac.auckland.se206.ml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import nz.ac.auckland.se206.ml.PredictionService.Round;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class PredictionServiceTest {
+
+  // a single thread, like the inference pool of the application
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private final PredictionService service = new PredictionService(executor);
+
+  @AfterEach
+  void tearDown() throws InterruptedException {
+    executor.shutdownNow();
+    assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  void testRoundEndsWithResult() throws Exception {
+    final AtomicInteger ticks = new AtomicInteger();
+    final CountDownLatch extraTick = new CountDownLatch(1);
+    final Round<String> round =
+        service.start(
+            () -> {
+              final int tick = ticks.incrementAndGet();
+              if (tick > 3) {
+                extraTick.countDown();
+              }
+              return tick == 3 ? "won" : null;
+            },
+            1);
+
+    assertEquals("won", round.getResult().get(5, TimeUnit.SECONDS));
+    // no tick runs once the round is over
+    assertFalse(extraTick.await(100, TimeUnit.MILLISECONDS));
+    assertEquals(3, ticks.get());
+  }
+
+  @Test
+  void testFailureEndsRound() {
+    final Round<String> round =
+        service.start(
+            () -> {
+              throw new IOException("no model");
+            },
+            1);
+
+    final ExecutionException exception =
+        assertThrows(ExecutionException.class, () -> round.getResult().get(5, TimeUnit.SECONDS));
+    assertTrue(exception.getCause() instanceof IOException);
+  }
+
+  @Test
+  void testCancelStopsTicks() throws Exception {
+    final AtomicInteger ticks = new AtomicInteger();
+    final CountDownLatch inFlight = new CountDownLatch(1);
+    final CountDownLatch proceed = new CountDownLatch(1);
+    final CountDownLatch nextTick = new CountDownLatch(1);
+    final Round<String> round =
+        service.start(
+            () -> {
+              if (ticks.incrementAndGet() > 1) {
+                nextTick.countDown();
+                return null;
+              }
+              // the first tick is still running when the round is cancelled
+              inFlight.countDown();
+              proceed.await();
+              return "late";
+            },
+            1);
+
+    assertTrue(inFlight.await(5, TimeUnit.SECONDS));
+    round.cancel();
+    assertThrows(CancellationException.class, () -> round.getResult().get());
+
+    // the tick in flight finishes, but its result is ignored and no other tick starts
+    proceed.countDown();
+    assertFalse(nextTick.await(100, TimeUnit.MILLISECONDS));
+    assertEquals(1, ticks.get());
+    assertTrue(round.getResult().isCancelled());
+
+    // the thread is free for the next round
+    assertEquals("next", service.start(() -> "next", 1).getResult().get(5, TimeUnit.SECONDS));
+  }
+}
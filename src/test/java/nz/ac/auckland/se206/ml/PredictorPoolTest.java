@@ -0,0 +1,168 @@
+package nz.ac.auckland.se206.ml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import ai.djl.Device;
+import ai.djl.Model;
+import ai.djl.inference.Predictor;
+import ai.djl.ndarray.NDManager;
+import ai.djl.translate.TranslateException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+class PredictorPoolTest {
+
+  /** A predictor that doubles its input, without a model behind it. */
+  private static final class FakePredictor extends Predictor<Integer, Integer> {
+    private boolean closed = false;
+
+    private FakePredictor() {
+      super(fakeModel(), null, Device.cpu(), false);
+    }
+
+    @Override
+    public Integer predict(final Integer input) {
+      return input * 2;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  /** A model whose manager does nothing, enough to construct a predictor without an engine. */
+  private static Model fakeModel() {
+    final NDManager manager =
+        (NDManager)
+            Proxy.newProxyInstance(
+                NDManager.class.getClassLoader(),
+                new Class<?>[] {NDManager.class},
+                (proxy, method, args) -> {
+                  switch (method.getName()) {
+                    case "getDevice":
+                      return Device.cpu();
+                    case "newSubManager":
+                      return proxy;
+                    case "isOpen":
+                      return false;
+                    default:
+                      return null;
+                  }
+                });
+
+    return (Model)
+        Proxy.newProxyInstance(
+            Model.class.getClassLoader(),
+            new Class<?>[] {Model.class},
+            (proxy, method, args) -> method.getName().equals("getNDManager") ? manager : null);
+  }
+
+  private final AtomicInteger created = new AtomicInteger();
+
+  private PredictorPool<Integer, Integer> newPool(final int capacity) {
+    return new PredictorPool<>(
+        () -> {
+          created.incrementAndGet();
+          return new FakePredictor();
+        },
+        capacity);
+  }
+
+  @Test
+  void testReusesPredictors() throws TranslateException {
+    final PredictorPool<Integer, Integer> pool = newPool(2);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals(2 * i, pool.predict(i));
+    }
+
+    assertEquals(1, created.get());
+    assertEquals(1, pool.getLivePredictors());
+    assertEquals(0, pool.getBusyPredictors());
+  }
+
+  @Test
+  void testGrowsUpToCapacity() throws Exception {
+    final PredictorPool<Integer, Integer> pool = newPool(2);
+
+    final Predictor<Integer, Integer> first = pool.borrow();
+    final Predictor<Integer, Integer> second = pool.borrow();
+    assertEquals(2, pool.getLivePredictors());
+    assertEquals(2, pool.getBusyPredictors());
+
+    // a third borrow waits for one of the two predictors
+    final CompletableFuture<Predictor<Integer, Integer>> third =
+        CompletableFuture.supplyAsync(borrowFrom(pool));
+    assertThrows(TimeoutException.class, () -> third.get(200, TimeUnit.MILLISECONDS));
+
+    pool.release(first);
+    assertSame(first, third.get(5, TimeUnit.SECONDS));
+    assertEquals(2, created.get());
+
+    pool.release(second);
+    pool.release(third.get());
+    assertEquals(0, pool.getBusyPredictors());
+  }
+
+  @Test
+  void testCloseWakesWaitingBorrow() throws Exception {
+    final PredictorPool<Integer, Integer> pool = newPool(1);
+    final FakePredictor busy = (FakePredictor) pool.borrow();
+
+    final CompletableFuture<Predictor<Integer, Integer>> waiting =
+        CompletableFuture.supplyAsync(borrowFrom(pool));
+    assertThrows(TimeoutException.class, () -> waiting.get(200, TimeUnit.MILLISECONDS));
+
+    pool.close();
+    try {
+      waiting.get(5, TimeUnit.SECONDS);
+      fail("The borrow should fail once the pool is closed");
+    } catch (ExecutionException e) {
+      assertTrue(e.getCause().getCause() instanceof TranslateException);
+    }
+
+    // the predictor in use is closed when it comes back
+    assertFalse(busy.closed);
+    pool.release(busy);
+    assertTrue(busy.closed);
+    assertEquals(0, pool.getLivePredictors());
+    assertThrows(TranslateException.class, pool::borrow);
+  }
+
+  @Test
+  void testCloseClosesIdlePredictors() throws TranslateException {
+    final PredictorPool<Integer, Integer> pool = newPool(2);
+    final FakePredictor predictor = (FakePredictor) pool.borrow();
+    pool.release(predictor);
+
+    pool.close();
+
+    assertTrue(predictor.closed);
+    assertEquals(0, pool.getLivePredictors());
+    assertThrows(TranslateException.class, () -> pool.batchPredict(List.of(1)));
+  }
+
+  private Supplier<Predictor<Integer, Integer>> borrowFrom(
+      final PredictorPool<Integer, Integer> pool) {
+    return () -> {
+      try {
+        return pool.borrow();
+      } catch (TranslateException e) {
+        throw new IllegalStateException(e);
+      }
+    };
+  }
+}
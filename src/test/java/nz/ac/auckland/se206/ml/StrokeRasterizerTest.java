@@ -0,0 +1,83 @@
+package nz.ac.auckland.se206.ml;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import nz.ac.auckland.se206.util.AreaDownsampler;
+import org.junit.jupiter.api.Test;
+
+class StrokeRasterizerTest {
+
+  private static final int WIDTH = 937;
+  private static final int HEIGHT = 688;
+
+  @Test
+  void testSameDrawingAsDownsampledCanvas() {
+    final Random random = new Random(206);
+    final StrokeRasterizer rasterizer = new StrokeRasterizer(WIDTH, HEIGHT);
+    final BufferedImage canvas = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D graphics = canvas.createGraphics();
+    graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+    final int[] colours = {0xff00ffff, 0xff1e90ff, 0xff9932cc, 0xffff1493, 0xff000000};
+    for (int stroke = 0; stroke < 30; stroke++) {
+      final int argb = colours[stroke % colours.length];
+      final float size = argb == 0xff000000 ? 14 : 12;
+      graphics.setColor(new Color(argb, true));
+      graphics.setStroke(new BasicStroke(size, BasicStroke.CAP_SQUARE, BasicStroke.JOIN_MITER));
+
+      // a stroke is many short lines, like the drag events of the canvas
+      float x = random.nextInt(WIDTH);
+      float y = random.nextInt(HEIGHT);
+      for (int i = 0; i < 40; i++) {
+        final float nextX = Math.max(0, Math.min(WIDTH, x + random.nextInt(21) - 10));
+        final float nextY = Math.max(0, Math.min(HEIGHT, y + random.nextInt(21) - 10));
+        graphics.draw(new Line2D.Float(x, y, nextX, nextY));
+        rasterizer.addLine(x, y, nextX, nextY, size, argb);
+        x = nextX;
+        y = nextY;
+      }
+    }
+    graphics.dispose();
+
+    final float[] expected = new AreaDownsampler(DoodlePrediction.INPUT_WIDTH).downsample(canvas);
+    final float[] actual = rasterizer.rasterize().getPixels();
+
+    double error = 0;
+    double ink = 0;
+    for (int i = 0; i < expected.length; i++) {
+      error += Math.abs(expected[i] - actual[i]);
+      ink += expected[i];
+    }
+    // the total difference stays small next to the total ink
+    assertTrue(error < ink * 0.1, "error " + error + " for " + ink);
+  }
+
+  @Test
+  void testClear() {
+    final StrokeRasterizer rasterizer = new StrokeRasterizer(WIDTH, HEIGHT);
+    rasterizer.addLine(100, 100, 800, 600, 12, 0xff00ffff);
+    rasterizer.clear();
+    rasterizer.addLine(100, 600, 800, 100, 12, 0xff00ffff);
+
+    final DoodleInput input = rasterizer.rasterize();
+    final float[] pixels = input.getPixels();
+    assertEquals(65, input.getWidth());
+    assertEquals(48, input.getHeight());
+    // the first line is gone, only the second one crosses the bottom left corner
+    assertEquals(0f, pixels[8 * 65 + 8]);
+    assertTrue(pixels[40 * 65 + 8] > 0f);
+
+    rasterizer.clear();
+    for (final float pixel : rasterizer.rasterize().getPixels()) {
+      assertEquals(0f, pixel);
+    }
+  }
+}
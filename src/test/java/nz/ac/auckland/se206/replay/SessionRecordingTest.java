@@ -0,0 +1,57 @@
+package nz.ac.auckland.se206.replay;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import nz.ac.auckland.se206.replay.SessionRecording.Event;
+import nz.ac.auckland.se206.replay.SessionRecording.EventType;
+import nz.ac.auckland.se206.replay.SessionRecording.Outcome;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SessionRecordingTest {
+
+  @Test
+  void testWriteAndRead(@TempDir final Path directory) throws IOException {
+    final SessionRecording recording = new SessionRecording("hot dog", 3, 10, 60, false, 937, 688);
+    recording.add(new Event(EventType.BRUSH, 0, 12, 0, 0xff1e90ff));
+    recording.add(new Event(EventType.START, 1500, 0, 0, 0));
+    recording.add(new Event(EventType.PRESS, 2000, 100.5f, 200.25f, 0));
+    for (int i = 1; i <= 500; i++) {
+      recording.add(new Event(EventType.DRAG, 2000 + i * 8, 100.5f + i, 200.25f + i / 2f, 0));
+    }
+    recording.add(new Event(EventType.RELEASE, 6100, 0, 0, 0));
+    recording.add(new Event(EventType.CLEAR, 7000, 0, 0, 0));
+    recording.add(new Event(EventType.END, 9000, 0, 0, 0));
+    recording.setOutcome(Outcome.WIN);
+
+    final Path file = directory.resolve("game.qdrec");
+    recording.write(file);
+    // a few bytes per event once compressed
+    assertTrue(Files.size(file) < 500 * 13, "size " + Files.size(file));
+
+    final SessionRecording read = SessionRecording.read(file);
+    assertEquals("hot dog", read.getWord());
+    assertEquals(3, read.getAccuracy());
+    assertEquals(10, read.getConfidence());
+    assertEquals(60, read.getTimeLimit());
+    assertEquals(937, read.getWidth());
+    assertEquals(688, read.getHeight());
+    assertEquals(Outcome.WIN, read.getOutcome());
+
+    final List<Event> events = read.getEvents();
+    assertEquals(recording.getEvents().size(), events.size());
+    for (int i = 0; i < events.size(); i++) {
+      final Event expected = recording.getEvents().get(i);
+      assertEquals(expected.getType(), events.get(i).getType());
+      assertEquals(expected.getTime(), events.get(i).getTime());
+      assertEquals(expected.getX(), events.get(i).getX());
+      assertEquals(expected.getY(), events.get(i).getY());
+      assertEquals(expected.getArgb(), events.get(i).getArgb());
+    }
+  }
+}
@@ -0,0 +1,138 @@
+package nz.ac.auckland.se206.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import nz.ac.auckland.se206.util.AppExecutors.Pool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class AppExecutorsTest {
+
+  // the pools of each test, apart from the ones of the application
+  private final AppExecutors executors = new AppExecutors();
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  void shutdown() {
+    release.countDown();
+    executors.close(1000);
+  }
+
+  /**
+   * Fills the threads of a pool with tasks that wait for the end of the test, then its queue.
+   *
+   * @param executor The executor of the pool
+   * @param threads The threads of the pool
+   * @param queueSize The size of the queue of the pool
+   * @param ran Counts the tasks that ran
+   */
+  private void fill(
+      final ExecutorService executor,
+      final int threads,
+      final int queueSize,
+      final AtomicInteger ran)
+      throws InterruptedException {
+    final CountDownLatch started = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      executor.execute(
+          () -> {
+            started.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            ran.incrementAndGet();
+          });
+    }
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    for (int i = 0; i < queueSize; i++) {
+      executor.execute(ran::incrementAndGet);
+    }
+  }
+
+  @Test
+  void testFullPoolDropsWork() throws InterruptedException {
+    final ExecutorService audio = executors.getExecutor(Pool.AUDIO);
+    final AtomicInteger ran = new AtomicInteger();
+    fill(audio, 2, 16, ran);
+
+    // a sound that does not fit is dropped without bothering the caller
+    audio.execute(ran::incrementAndGet);
+    assertEquals(1, executors.getRejectedCount(Pool.AUDIO));
+
+    release.countDown();
+    audio.shutdown();
+    assertTrue(audio.awaitTermination(5, TimeUnit.SECONDS));
+    assertEquals(18, ran.get());
+  }
+
+  @Test
+  void testFullIoPoolRejectsWork() throws InterruptedException {
+    final ExecutorService io = executors.getExecutor(Pool.IO);
+    final AtomicInteger ran = new AtomicInteger();
+    fill(io, 2, 64, ran);
+
+    // the caller, e.g. the JavaFX thread, never runs the work itself
+    final AtomicReference<Thread> runner = new AtomicReference<>();
+    assertThrows(
+        RejectedExecutionException.class,
+        () -> io.execute(() -> runner.set(Thread.currentThread())));
+    assertEquals(1, executors.getRejectedCount(Pool.IO));
+    assertNull(runner.get());
+  }
+
+  @Test
+  void testThreadsAreNamedDaemons() throws InterruptedException {
+    final AtomicReference<Thread> thread = new AtomicReference<>();
+    final CountDownLatch ran = new CountDownLatch(1);
+
+    executors
+        .getExecutor(Pool.SPEECH)
+        .execute(
+            () -> {
+              thread.set(Thread.currentThread());
+              ran.countDown();
+            });
+
+    assertTrue(ran.await(5, TimeUnit.SECONDS));
+    assertTrue(thread.get().getName().startsWith("quickdraw-speech-"));
+    assertTrue(thread.get().isDaemon());
+  }
+
+  @Test
+  void testShutdownPoolsDropWork() throws InterruptedException {
+    final ExecutorService speech = executors.getExecutor(Pool.SPEECH);
+    executors.close(1000);
+    assertTrue(speech.isTerminated());
+
+    // work given after the shutdown, e.g. by a game ending while the application closes, never
+    // runs and does not throw, except for the io pool that rejects it
+    final AtomicInteger ran = new AtomicInteger();
+    executors.getExecutor(Pool.SPEECH).execute(ran::incrementAndGet);
+    executors.getExecutor(Pool.AUDIO).execute(ran::incrementAndGet);
+    final ExecutorService inference = executors.getExecutor(Pool.INFERENCE);
+    assertTrue(inference instanceof ScheduledExecutorService);
+    ((ScheduledExecutorService) inference)
+        .scheduleWithFixedDelay(ran::incrementAndGet, 0, 1, TimeUnit.MILLISECONDS);
+    assertThrows(
+        RejectedExecutionException.class,
+        () -> executors.getExecutor(Pool.IO).execute(ran::incrementAndGet));
+
+    // the executors after the shutdown start no thread, so nothing can run later either
+    assertEquals(0, ran.get());
+    assertTrue(executors.getExecutor(Pool.SPEECH).isTerminated());
+    assertEquals(1, executors.getRejectedCount(Pool.SPEECH));
+  }
+}
@@ -0,0 +1,141 @@
+package nz.ac.auckland.se206.util;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import nz.ac.auckland.se206.ml.DoodleInput;
+import org.imgscalr.Scalr;
+import org.junit.jupiter.api.Test;
+
+class AreaDownsamplerTest {
+
+  private static File[] getTestImages() {
+    return new File(System.getProperty("user.dir") + "/src/test/resources/images").listFiles();
+  }
+
+  /** Resizes an image the way the predictions did before the area downsampler. */
+  private static float[] resizeWithScalr(final BufferedImage image) {
+    final BufferedImage resized =
+        Scalr.resize(
+            image, Scalr.Method.SPEED, Scalr.Mode.FIT_TO_WIDTH, 65, 65, Scalr.OP_ANTIALIAS);
+
+    return DoodleInput.fromImage(resized).getPixels();
+  }
+
+  private static float sum(final float[] values, final int size) {
+    float sum = 0;
+    for (int i = 0; i < size; i++) {
+      sum += values[i];
+    }
+    return sum;
+  }
+
+  @Test
+  void testUniformImage() {
+    final BufferedImage image = new BufferedImage(937, 688, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D g = image.createGraphics();
+    g.setColor(new Color(128, 128, 128));
+    g.fillRect(0, 0, image.getWidth(), image.getHeight());
+    g.dispose();
+
+    final AreaDownsampler downsampler = new AreaDownsampler(65);
+    final float[] output = downsampler.downsample(image);
+
+    for (int i = 0; i < 65 * downsampler.getTargetHeight(); i++) {
+      assertEquals(128 / 255f, output[i], 1e-4f);
+    }
+  }
+
+  @Test
+  void testSameSizeAsScalr() throws IOException {
+    final AreaDownsampler downsampler = new AreaDownsampler(65);
+
+    // the canvas of the game
+    downsampler.downsample(new BufferedImage(937, 688, BufferedImage.TYPE_INT_RGB));
+    final BufferedImage canvas =
+        Scalr.resize(
+            new BufferedImage(937, 688, BufferedImage.TYPE_INT_RGB),
+            Scalr.Method.SPEED,
+            Scalr.Mode.FIT_TO_WIDTH,
+            65,
+            65);
+    assertEquals(canvas.getHeight(), downsampler.getTargetHeight());
+
+    for (final File file : getTestImages()) {
+      final BufferedImage image = ImageIO.read(file);
+      final float[] expected = resizeWithScalr(image);
+      downsampler.downsample(image);
+
+      assertEquals(expected.length, 65 * downsampler.getTargetHeight(), file.getName());
+    }
+  }
+
+  @Test
+  void testKeepsInk() {
+    // a thin line that nearest neighbour sampling would mostly skip
+    final BufferedImage image = new BufferedImage(937, 688, BufferedImage.TYPE_INT_RGB);
+    final Graphics2D g = image.createGraphics();
+    g.setColor(Color.WHITE);
+    g.fillRect(100, 0, 2, image.getHeight());
+    g.dispose();
+
+    final AreaDownsampler downsampler = new AreaDownsampler(65);
+    final float[] output = downsampler.downsample(image);
+    final int size = 65 * downsampler.getTargetHeight();
+
+    // the average brightness of the image is kept
+    final float expected = 2f * image.getHeight() / (image.getWidth() * image.getHeight());
+    assertEquals(expected, sum(output, size) / size, 1e-4f);
+  }
+
+  @Test
+  void testSameAsArgbRaster() throws IOException {
+    final AreaDownsampler downsampler = new AreaDownsampler(65);
+
+    for (final File file : getTestImages()) {
+      final BufferedImage image = ImageIO.read(file);
+      final int width = image.getWidth();
+      final int height = image.getHeight();
+
+      final float[] fromImage = downsampler.downsample(image).clone();
+      final float[] fromRaster =
+          downsampler.downsample(image.getRGB(0, 0, width, height, null, 0, width), width, height);
+
+      assertArrayEquals(fromImage, fromRaster, 1e-6f, file.getName());
+    }
+  }
+
+  @Test
+  void testCloseToScalr() throws IOException {
+    final AreaDownsampler downsampler = new AreaDownsampler(65);
+
+    for (final File file : getTestImages()) {
+      final BufferedImage image = ImageIO.read(file);
+      final float[] expected = resizeWithScalr(image);
+      final float[] actual = downsampler.downsample(image);
+
+      float difference = 0;
+      for (int i = 0; i < expected.length; i++) {
+        difference += Math.abs(expected[i] - actual[i]);
+      }
+
+      // both are blurred versions of the same drawing
+      assertTrue(difference / expected.length < 0.1f, file.getName());
+    }
+  }
+
+  @Test
+  void testRejectsUpscaling() {
+    final AreaDownsampler downsampler = new AreaDownsampler(65);
+
+    assertThrows(IllegalArgumentException.class, () -> downsampler.downsample(new int[32], 32, 1));
+  }
+}
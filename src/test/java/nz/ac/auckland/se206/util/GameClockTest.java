@@ -0,0 +1,67 @@
+package nz.ac.auckland.se206.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class GameClockTest {
+
+  private static final long MS = 1_000_000;
+
+  @Test
+  void testTicksOncePerSecond() {
+    final GameClock clock = new GameClock(3);
+    final List<Integer> ticks = new ArrayList<>();
+    clock.addTickListener(ticks::add);
+
+    clock.start(0);
+    for (long now = 0; now <= 4000 * MS; now += 100 * MS) {
+      clock.tick(now);
+    }
+
+    assertEquals(List.of(3, 2, 1, 0), ticks);
+  }
+
+  @Test
+  void testRemainingIsRoundedUp() {
+    final GameClock clock = new GameClock(60);
+    clock.start(1000 * MS);
+
+    assertEquals(60, clock.getRemainingSeconds(1000 * MS));
+    assertEquals(60, clock.getRemainingSeconds(1999 * MS));
+    assertEquals(59, clock.getRemainingSeconds(2000 * MS));
+    assertEquals(1, clock.getRemainingSeconds(60_999 * MS));
+    assertEquals(0, clock.getRemainingSeconds(61_000 * MS));
+    assertFalse(clock.isExpired(60_999 * MS));
+    assertTrue(clock.isExpired(61_000 * MS));
+  }
+
+  @Test
+  void testStopKeepsElapsedTime() {
+    final GameClock clock = new GameClock(60);
+    assertEquals(0, clock.getElapsedNanos(500 * MS));
+    assertFalse(clock.isRunning());
+
+    clock.start(0);
+    assertTrue(clock.isRunning());
+    clock.stop(9_750 * MS);
+
+    assertFalse(clock.isRunning());
+    assertEquals(9_750 * MS, clock.getElapsedNanos(30_000 * MS));
+    assertFalse(clock.isExpired(90_000 * MS));
+  }
+
+  @Test
+  void testElapsedIsCappedAtLimit() {
+    final GameClock clock = new GameClock(10);
+    clock.start(0);
+    clock.stop(15_000 * MS);
+
+    assertEquals(10_000 * MS, clock.getElapsedNanos(20_000 * MS));
+    assertTrue(clock.isExpired(20_000 * MS));
+  }
+}
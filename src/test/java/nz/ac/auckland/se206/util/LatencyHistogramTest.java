@@ -0,0 +1,45 @@
+package nz.ac.auckland.se206.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void testBucketsAreContiguous() {
+    for (long micros = 0; micros < 1_000_000; micros++) {
+      final int bucket = LatencyHistogram.getBucket(micros);
+      assertTrue(micros <= LatencyHistogram.getUpperBound(bucket));
+      if (bucket > 0) {
+        assertTrue(micros > LatencyHistogram.getUpperBound(bucket - 1));
+      }
+    }
+  }
+
+  @Test
+  void testPercentiles() {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(-1, histogram.getPercentile(50));
+
+    // 1 ms to 100 ms
+    for (int millis = 1; millis <= 100; millis++) {
+      histogram.record(millis * 1_000_000L);
+    }
+
+    assertEquals(100, histogram.getCount());
+    assertWithinBucket(50_000, histogram.getPercentile(50));
+    assertWithinBucket(95_000, histogram.getPercentile(95));
+    assertWithinBucket(99_000, histogram.getPercentile(99));
+    assertWithinBucket(100_000, histogram.getPercentile(100));
+
+    histogram.reset();
+    assertEquals(0, histogram.getCount());
+  }
+
+  private static void assertWithinBucket(final long expected, final long actual) {
+    // a percentile is rounded up to the end of its bucket, at most 1/16 above
+    assertTrue(actual >= expected && actual <= expected + expected / 16, expected + " " + actual);
+  }
+}
@@ -0,0 +1,64 @@
+package nz.ac.auckland.se206.words;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import nz.ac.auckland.se206.words.CategoryIndex.Difficulty;
+import org.junit.jupiter.api.Test;
+
+class CategoryIndexTest {
+
+  private final CategoryIndex index =
+      new CategoryIndex(
+          List.of(
+              new String[] {"\uFEFFaircraft carrier", "H"},
+              new String[] {"airplane", "E"},
+              new String[] {"alarm clock", "M"},
+              new String[] {"ant", "E"},
+              new String[] {"angel", "H"}));
+
+  @Test
+  void testViewsOfWordsSettings() {
+    assertEquals(List.of("airplane", "ant"), index.getCategories(3));
+    assertEquals(List.of("airplane", "ant", "alarm clock"), index.getCategories(2));
+    assertEquals(
+        List.of("airplane", "ant", "alarm clock", "aircraft carrier", "angel"),
+        index.getCategories(1));
+    assertEquals(List.of("aircraft carrier", "angel"), index.getCategories(0));
+
+    // the views are shared and read-only
+    assertSame(index.getCategories(2), index.getCategories(2));
+    assertThrows(UnsupportedOperationException.class, () -> index.getCategories(1).add("bat"));
+  }
+
+  @Test
+  void testIds() {
+    assertEquals(5, index.size());
+    assertEquals(3, index.getId("aircraft carrier"));
+    assertEquals(-1, index.getId("zebra"));
+    assertEquals("alarm clock", index.getCategory(2));
+    assertEquals(Difficulty.M, index.getDifficulty(2));
+    assertEquals(3, index.getStart(0));
+    assertEquals(2, index.getEnd(3));
+  }
+
+  @Test
+  void testRandomCategoryOfSetting() {
+    for (int i = 0; i < 50; i++) {
+      assertTrue(index.getCategories(0).contains(index.getRandomCategory(0)));
+    }
+  }
+
+  @Test
+  void testCategoryFile() throws Exception {
+    final CategoryIndex categories = CategoryIndex.getInstance();
+
+    assertEquals(345, categories.size());
+    assertSame(categories, CategoryIndex.getInstance());
+    assertEquals(0, categories.getId("airplane"));
+    assertTrue(categories.getId("aircraft carrier") >= 0);
+  }
+}
@@ -0,0 +1,86 @@
+package nz.ac.auckland.se206.words;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class WordSchedulerTest {
+
+  private final CategoryIndex index =
+      new CategoryIndex(
+          List.of(
+              new String[] {"aircraft carrier", "H"},
+              new String[] {"airplane", "E"},
+              new String[] {"alarm clock", "M"},
+              new String[] {"ant", "E"},
+              new String[] {"angel", "H"}));
+
+  @Test
+  void testDrawsEveryWordOnce() {
+    final WordScheduler scheduler = new WordScheduler(index, List.of());
+    final Set<String> drawn = new HashSet<>();
+
+    while (!scheduler.isAllPlayed(1)) {
+      final String word = scheduler.next(1);
+      assertTrue(drawn.add(word), word + " was drawn twice");
+      scheduler.markPlayed(word);
+    }
+
+    assertEquals(new HashSet<>(index.getCategories(1)), drawn);
+    assertThrows(IllegalStateException.class, () -> scheduler.next(1));
+  }
+
+  @Test
+  void testStaysInWordsSetting() {
+    final WordScheduler scheduler = new WordScheduler(index, List.of("airplane"));
+
+    for (int i = 0; i < 20; i++) {
+      assertEquals("ant", scheduler.next(3));
+      assertTrue(Set.of("aircraft carrier", "angel").contains(scheduler.next(0)));
+    }
+    assertEquals(2, scheduler.getUnplayedCount(2));
+  }
+
+  @Test
+  void testExcludedWords() {
+    final WordScheduler scheduler = new WordScheduler(index, List.of("airplane"));
+
+    for (int i = 0; i < 20; i++) {
+      assertEquals("alarm clock", scheduler.next(2, Set.of("ant", "angel")));
+    }
+    assertNull(scheduler.next(3, List.of("ant", "ant")));
+
+    // excluding words does not play them
+    assertEquals(2, scheduler.getUnplayedCount(2));
+    assertEquals("ant", scheduler.next(3));
+    final Set<String> drawn = new HashSet<>();
+    for (int i = 0; i < 100; i++) {
+      drawn.add(scheduler.next(2, Set.of("airplane")));
+    }
+    assertEquals(Set.of("ant", "alarm clock"), drawn);
+  }
+
+  @Test
+  void testPlayedWords() {
+    // the saved lists of a new profile hold an empty word, which is not a category
+    final WordScheduler scheduler =
+        new WordScheduler(index, List.of("", "airplane", "ant", "airplane"));
+
+    assertTrue(scheduler.isPlayed("ant"));
+    assertFalse(scheduler.isPlayed("angel"));
+    assertTrue(scheduler.isAllPlayed(3));
+    assertFalse(scheduler.isAllPlayed(2));
+    assertEquals("alarm clock", scheduler.next(2));
+
+    scheduler.reset();
+    assertFalse(scheduler.isAllPlayed(3));
+    assertEquals(5, scheduler.getUnplayedCount(1));
+  }
+}